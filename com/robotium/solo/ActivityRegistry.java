@@ -0,0 +1,517 @@
+package com.robotium.solo;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import android.app.Activity;
+import android.app.Application;
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+
+/**
+ * 由Activity生命周期回调驱动的Activity登记表，按打开顺序保存所有存活的Activity，并记录当前处于RESUMED状态的Activity
+ * Keeps the opened activities in the order they were last shown, driven by
+ * {@link Application.ActivityLifecycleCallbacks}. The activities are kept in a doubly linked
+ * list indexed by a map from activity to list node, so adding, moving to the top and removing
+ * an activity are O(1). {@code Activity} does not override {@code equals}, so the
+ * {@link WeakHashMap} is an identity map that does not keep finished activities alive.
+ * An activity that is finishing leaves the list when it is paused, so it is no longer the
+ * current activity, but it is still an opened activity until it has been destroyed.
+ * The callbacks are called on the main thread and update the registry directly, so no
+ * thread is needed to track activities.
+ *
+ */
+
+class ActivityRegistry implements Application.ActivityLifecycleCallbacks {
+	//休息工具类，Activity变化时通知等待中的线程
+	private final Sleeper sleeper;
+	//Activity到链表节点的映射
+	private final Map<Activity, Node> nodes = new WeakHashMap<Activity, Node>();
+	//链表的栈顶(最近显示的Activity)和栈底
+	private Node top;
+	private Node bottom;
+	//正在关闭但还未销毁的Activity，不在链表中
+	private final Map<Activity, Boolean> finishing = new WeakHashMap<Activity, Boolean>();
+	//当前处于RESUMED状态的Activity
+	private WeakReference<Activity> resumedActivity;
+	//注册了回调的Application
+	private Application application;
+	//等待Activity进入RESUMED状态的线程
+	private final ArrayList<ResumeLatch> resumeLatches = new ArrayList<ResumeLatch>();
+	//等待Activity被销毁的线程
+	private final ArrayList<DestroyLatch> destroyLatches = new ArrayList<DestroyLatch>();
+
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param sleeper the {@code Sleeper} instance
+	 */
+
+	public ActivityRegistry(Sleeper sleeper) {
+		this.sleeper = sleeper;
+	}
+
+	/**
+	 * 在Application上注册生命周期回调，Android 4.0(API 14)以下不支持
+	 * Registers the lifecycle callbacks with the given application. Not supported below API level 14.
+	 *
+	 * @param application the application under test
+	 * @return {@code true} if the callbacks were registered
+	 */
+
+	public synchronized boolean register(Application application) {
+		if(this.application != null){
+			return true;
+		}
+		if(application == null || android.os.Build.VERSION.SDK_INT < 14){
+			return false;
+		}
+		application.registerActivityLifecycleCallbacks(this);
+		this.application = application;
+		return true;
+	}
+
+	/**
+	 * 注销生命周期回调
+	 * Unregisters the lifecycle callbacks.
+	 */
+
+	public synchronized void unregister() {
+		if(application != null){
+			application.unregisterActivityLifecycleCallbacks(this);
+			application = null;
+		}
+	}
+
+	/**
+	 * 判断生命周期回调是否已经注册
+	 * Returns true if the lifecycle callbacks are registered.
+	 *
+	 * @return true if the lifecycle callbacks are registered
+	 */
+
+	public synchronized boolean isRegistered() {
+		return application != null;
+	}
+
+	/**
+	 * 把Activity放到栈顶，已经登记的Activity移动到栈顶
+	 * Puts the given activity on top, moving it there if it is already registered.
+	 *
+	 * @param activity the activity to put on top
+	 */
+
+	public synchronized void push(Activity activity) {
+		finishing.remove(activity);
+		Node node = nodes.get(activity);
+		if(node == null){
+			node = new Node(activity);
+			nodes.put(activity, node);
+		}
+		else if(node == top){
+			return;
+		}
+		else{
+			unlink(node);
+		}
+		node.below = top;
+		if(top != null){
+			top.above = node;
+		}
+		top = node;
+		if(bottom == null){
+			bottom = node;
+		}
+		changed();
+	}
+
+	/**
+	 * 移除一个Activity
+	 * Removes the given activity.
+	 *
+	 * @param activity the activity to remove
+	 */
+
+	public synchronized void remove(Activity activity) {
+		final Node node = nodes.remove(activity);
+		if(node != null){
+			unlink(node);
+			changed();
+		}
+		if(resumedActivity != null && resumedActivity.get() == activity){
+			resumedActivity = null;
+		}
+	}
+
+	/**
+	 * 返回栈顶的Activity
+	 * Returns the activity on top, i.e. the one that was shown most recently.
+	 *
+	 * @return the activity on top or {@code null} if there is none
+	 */
+
+	public synchronized Activity getCurrentActivity() {
+		//跳过已经被回收的Activity
+		while(top != null && top.activity.get() == null){
+			unlink(top);
+		}
+		return top != null ? top.activity.get() : null;
+	}
+
+	/**
+	 * 返回当前处于RESUMED状态的Activity
+	 * Returns the activity that is currently resumed.
+	 *
+	 * @return the resumed activity or {@code null} if no activity is resumed
+	 */
+
+	public synchronized Activity getResumedActivity() {
+		return resumedActivity != null ? resumedActivity.get() : null;
+	}
+
+	/**
+	 * 按打开顺序返回所有存活的Activity，栈顶的Activity在最后，正在关闭但还未销毁的Activity在最前
+	 * Returns the opened activities, the one on top last. Activities that are finishing but
+	 * have not been destroyed yet come first.
+	 *
+	 * @return the opened activities
+	 */
+
+	public synchronized ArrayList<Activity> getActivities() {
+		final ArrayList<Activity> activities = new ArrayList<Activity>(finishing.size() + nodes.size());
+		activities.addAll(finishing.keySet());
+		for(Node node = bottom; node != null; node = node.above){
+			final Activity activity = node.activity.get();
+			if(activity != null){
+				activities.add(activity);
+			}
+		}
+		return activities;
+	}
+
+	/**
+	 * 判断是否没有登记的Activity
+	 * Returns true if no activity is registered.
+	 *
+	 * @return true if no activity is registered
+	 */
+
+	public synchronized boolean isEmpty() {
+		return getCurrentActivity() == null;
+	}
+
+	/**
+	 * 清空登记表
+	 * Removes all activities.
+	 */
+
+	public synchronized void clear() {
+		nodes.clear();
+		finishing.clear();
+		top = null;
+		bottom = null;
+		resumedActivity = null;
+		changed();
+	}
+
+	/**
+	 * 等待登记表中有Activity，Activity登记时立即被唤醒
+	 * Waits until an activity is registered. The waiting thread is woken up as soon as one is.
+	 *
+	 * @param timeout the maximum amount of time in milliseconds to wait
+	 * @return the activity on top or {@code null} if there is none before the timeout
+	 */
+
+	public synchronized Activity waitForCurrentActivity(int timeout) {
+		final long endTime = SystemClock.uptimeMillis() + timeout;
+		Activity activity = getCurrentActivity();
+
+		while(activity == null){
+			final long remaining = endTime - SystemClock.uptimeMillis();
+			if(remaining <= 0){
+				return null;
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				return null;
+			}
+			activity = getCurrentActivity();
+		}
+		return activity;
+	}
+
+	/**
+	 * 等待符合条件的Activity进入RESUMED状态，Activity进入RESUMED状态时立即被唤醒，只受超时时间限制
+	 * Waits for an activity matching the given filter to be resumed. The waiting thread is woken
+	 * up by the lifecycle callback itself, so the timeout is the only bound. An activity that is
+	 * resumed already satisfies the wait.
+	 *
+	 * @param activityFilter the filter the activity has to match
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @return {@code true} if a matching activity is resumed before the timeout and {@code false} if it is not
+	 */
+
+	public boolean waitForResumedActivity(ActivityFilter activityFilter, int timeout) {
+		final ResumeLatch resumeLatch = new ResumeLatch(activityFilter);
+
+		synchronized (this) {
+			final Activity activity = getResumedActivity();
+			if(activity != null && activityFilter.matches(activity)){
+				return true;
+			}
+			resumeLatches.add(resumeLatch);
+		}
+		try {
+			return resumeLatch.await(SystemClock.uptimeMillis() + timeout);
+		} finally {
+			synchronized (this) {
+				resumeLatches.remove(resumeLatch);
+			}
+		}
+	}
+
+	/**
+	 * 在主线程中一次关闭给定的Activity，并等待生命周期回调确认它们以及正在关闭的Activity全部被销毁
+	 * Finishes the given activities in one batch on the main thread and waits until the
+	 * lifecycle callbacks confirm that all of them, and every activity that was already
+	 * finishing, have been destroyed. Activities that have been destroyed already are not waited for.
+	 *
+	 * @param instrumentation the {@code Instrumentation} used to run on the main thread
+	 * @param activities the activities to finish, the one on top last
+	 * @param timeout the amount of time in milliseconds to wait for the activities to be destroyed
+	 * @return {@code true} if all activities were destroyed before the timeout
+	 */
+
+	public boolean finishAndWaitForDestroyed(Instrumentation instrumentation, final List<Activity> activities, int timeout) {
+		//先登记再关闭，避免错过onActivityDestroyed回调
+		final DestroyLatch destroyLatch;
+		synchronized (this) {
+			destroyLatch = new DestroyLatch();
+			for(Activity activity : activities){
+				//只等待还未销毁的Activity
+				if(nodes.containsKey(activity)){
+					destroyLatch.add(activity);
+				}
+			}
+			for(Activity activity : finishing.keySet()){
+				destroyLatch.add(activity);
+			}
+			destroyLatches.add(destroyLatch);
+		}
+		try {
+			instrumentation.runOnMainSync(new Runnable() {
+				public void run() {
+					//从栈顶开始关闭
+					for(int i = activities.size() - 1; i >= 0; i--){
+						try{
+							activities.get(i).finish();
+						}catch(Throwable e){
+							e.printStackTrace();
+						}
+					}
+				}
+			});
+			return destroyLatch.await(SystemClock.uptimeMillis() + timeout);
+		} finally {
+			synchronized (this) {
+				destroyLatches.remove(destroyLatch);
+			}
+		}
+	}
+
+	public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+		push(activity);
+	}
+
+	public void onActivityStarted(Activity activity) {
+	}
+
+	public synchronized void onActivityResumed(Activity activity) {
+		resumedActivity = new WeakReference<Activity>(activity);
+		push(activity);
+		for(int i = 0; i < resumeLatches.size(); i++){
+			resumeLatches.get(i).offer(activity);
+		}
+		changed();
+	}
+
+	public synchronized void onActivityPaused(Activity activity) {
+		if(resumedActivity != null && resumedActivity.get() == activity){
+			resumedActivity = null;
+		}
+		//正在关闭的Activity不再作为当前Activity，销毁之前仍然记录为正在关闭
+		if(activity.isFinishing() && nodes.containsKey(activity)){
+			remove(activity);
+			finishing.put(activity, Boolean.TRUE);
+		}
+	}
+
+	public void onActivityStopped(Activity activity) {
+	}
+
+	public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+	}
+
+	public synchronized void onActivityDestroyed(Activity activity) {
+		remove(activity);
+		if(finishing.remove(activity) != null){
+			changed();
+		}
+		for(int i = 0; i < destroyLatches.size(); i++){
+			destroyLatches.get(i).destroyed(activity);
+		}
+	}
+
+	//从链表中摘除节点
+	private void unlink(Node node) {
+		if(node.above != null){
+			node.above.below = node.below;
+		}
+		else{
+			top = node.below;
+		}
+		if(node.below != null){
+			node.below.above = node.above;
+		}
+		else{
+			bottom = node.above;
+		}
+		node.above = null;
+		node.below = null;
+	}
+
+	//唤醒等待的线程
+	private void changed() {
+		notifyAll();
+		sleeper.signalChange();
+	}
+
+
+	/**
+	 * Activity过滤条件
+	 * Filter for activities.
+	 */
+
+	interface ActivityFilter {
+
+		/**
+		 * Returns true if the activity matches this filter.
+		 *
+		 * @param activity the activity to check
+		 * @return true if the activity matches
+		 */
+
+		boolean matches(Activity activity);
+	}
+
+
+	/**
+	 * 符合条件的Activity进入RESUMED状态时打开的门闩
+	 * Latch that is opened when an activity matching its filter is resumed.
+	 */
+
+	private static class ResumeLatch {
+		private final ActivityFilter activityFilter;
+		private boolean resumed;
+
+		ResumeLatch(ActivityFilter activityFilter) {
+			this.activityFilter = activityFilter;
+		}
+
+		//在主线程中由onActivityResumed调用
+		synchronized void offer(Activity activity) {
+			if(!resumed && activityFilter.matches(activity)){
+				resumed = true;
+				notifyAll();
+			}
+		}
+
+		/**
+		 * 等待门闩打开，直到指定时间
+		 * Waits until the latch is opened or the given time has been reached.
+		 *
+		 * @param endTime the uptime at which to give up
+		 * @return true if the latch was opened
+		 */
+
+		synchronized boolean await(long endTime) {
+			long remaining = endTime - SystemClock.uptimeMillis();
+			while(!resumed && remaining > 0){
+				try {
+					wait(remaining);
+				} catch (InterruptedException ignored) {
+					return resumed;
+				}
+				remaining = endTime - SystemClock.uptimeMillis();
+			}
+			return resumed;
+		}
+	}
+
+
+	/**
+	 * 给定的Activity全部被销毁时打开的门闩
+	 * Latch that is opened when all of the given activities have been destroyed.
+	 */
+
+	private static class DestroyLatch {
+		//还未销毁的Activity
+		private final Map<Activity, Boolean> pending = new IdentityHashMap<Activity, Boolean>();
+
+		//在持有登记表锁时调用，回调还不会到达
+		synchronized void add(Activity activity) {
+			pending.put(activity, Boolean.TRUE);
+		}
+
+		//在主线程中由onActivityDestroyed调用
+		synchronized void destroyed(Activity activity) {
+			if(pending.remove(activity) != null && pending.isEmpty()){
+				notifyAll();
+			}
+		}
+
+		/**
+		 * 等待所有Activity被销毁，直到指定时间
+		 * Waits until all activities have been destroyed or the given time has been reached.
+		 *
+		 * @param endTime the uptime at which to give up
+		 * @return true if all activities have been destroyed
+		 */
+
+		synchronized boolean await(long endTime) {
+			long remaining = endTime - SystemClock.uptimeMillis();
+			while(!pending.isEmpty() && remaining > 0){
+				try {
+					wait(remaining);
+				} catch (InterruptedException ignored) {
+					return pending.isEmpty();
+				}
+				remaining = endTime - SystemClock.uptimeMillis();
+			}
+			return pending.isEmpty();
+		}
+	}
+
+
+	/**
+	 * 链表节点，弱引用Activity避免影响GC
+	 * A node of the list. The activity is weakly referenced so that it can be garbage collected.
+	 */
+
+	private static class Node {
+		final WeakReference<Activity> activity;
+		Node above;
+		Node below;
+
+		Node(Activity activity) {
+			this.activity = new WeakReference<Activity>(activity);
+		}
+	}
+}
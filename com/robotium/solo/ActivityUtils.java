@@ -1,13 +1,11 @@
 package com.robotium.solo;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Stack;
 import java.util.Timer;
 import com.robotium.solo.Solo.Config;
 import junit.framework.Assert;
 import android.app.Activity;
+import android.app.Application;
 import android.app.Instrumentation;
 import android.app.Instrumentation.ActivityMonitor;
 import android.content.IntentFilter;
@@ -39,17 +37,15 @@ class ActivityUtils {
 	private final String LOG_TAG = "Robotium";
 	//最小休眠时间100ms
 	private final int MINISLEEP = 100;
-	//activity堆栈，用于存放所有开启状态的activity,采用WeakReference,避免对GC产生影响
-	private Stack<WeakReference<Activity>> activityStack;
-	//Activity对象引用变量，使用WeakReference，避免对GC产生影响
-	private WeakReference<Activity> weakActivityReference;
-	//堆栈存储activity的名字
-	private Stack<String> activitiesStoredInActivityStack;
+	//没有Activity时，最长等待多久再检查一次activityMonitor
+	private final int ACTIVITY_MONITOR_CHECK = 300;
+	//Activity登记表，由生命周期回调维护所有开启状态的activity
+	private final ActivityRegistry activityRegistry;
 	//定时器
 	private Timer activitySyncTimer;
 	//登记Activity是否被执行的标识
 	private boolean registerActivities;
-	//线程
+	//线程，只在不支持生命周期回调时使用
 	Thread activityThread;
 
 	/**
@@ -66,30 +62,52 @@ class ActivityUtils {
 		this.inst = inst;
 		this.activity = activity;
 		this.sleeper = sleeper;
-		createStackAndPushStartActivity();
+		this.activityRegistry = new ActivityRegistry(sleeper);
+		pushStartActivity();
 		activitySyncTimer = new Timer();
-		activitiesStoredInActivityStack = new Stack<String>();
 		setupActivityMonitor();
-		setupActivityStackListener();
+		//优先使用生命周期回调，不支持时使用监听线程
+		if(!registerActivityLifecycleCallbacks()){
+			setupActivityStackListener();
+		}
 	}
 
 
 
 	/**
-	 * 创建一个堆栈，用于存放创建的activity.因为 activity创建了新的老的就在后面了，所以使用堆栈的先进后出功能
-	 * Creates a new activity stack and pushes the start activity. 
+	 * 把构造函数传入的activity登记为当前最新的activity
+	 * Registers the start activity.
 	 */
 
-	private void createStackAndPushStartActivity(){
-		//初始化一个堆栈
-		activityStack = new Stack<WeakReference<Activity>>();
-		//如果构造函数传入的activity不为null，那么假如堆栈最为当前最新的activity
+	private void pushStartActivity(){
+		//如果构造函数传入的activity不为null，那么登记为当前最新的activity
 		if (activity != null && config.trackActivities){
-			WeakReference<Activity> weakReference = new WeakReference<Activity>(activity);
+			activityRegistry.push(activity);
 			activity = null;
-			activityStack.push(weakReference);
 		}
 	}
+
+	/**
+	 * 在被测应用的Application上注册Activity生命周期回调
+	 * Registers the activity lifecycle callbacks with the application under test.
+	 *
+	 * @return {@code true} if the callbacks were registered
+	 */
+
+	private boolean registerActivityLifecycleCallbacks(){
+		if(!config.trackActivities){
+			return false;
+		}
+		try {
+			final Object applicationContext = inst.getTargetContext().getApplicationContext();
+			if(applicationContext instanceof Application){
+				return activityRegistry.register((Application) applicationContext);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
 	
 
 	/**
@@ -101,21 +119,8 @@ class ActivityUtils {
 
 	public ArrayList<Activity> getAllOpenedActivities()
 	{	
-		//创建一个装activity的ArrayList数组列表
-		ArrayList<Activity> activities = new ArrayList<Activity>();
-		//申明一个遍历Activity的activityStackIterator遍历器，并将遍历的结果赋值给这个遍历器
-		Iterator<WeakReference<Activity>> activityStackIterator = activityStack.iterator();
-		//当遍历器中还存在下一个
-		while(activityStackIterator.hasNext()){
-			//申明一个Activity复合型变量，并将遍历中的Activity项赋值给Activity变量
-			Activity  activity = activityStackIterator.next().get();
-		    //确认Activity不为空值
-			if(activity!=null)
-				//把Activity实例添加到Activity的数组容器中
-				activities.add(activity);
-		}
-		//返回这个装Activity的容器；
-		return activities;
+		//按打开顺序返回登记表中存活的Activity
+		return activityRegistry.getActivities();
 	}
 
 	/**
@@ -162,9 +167,10 @@ class ActivityUtils {
 	}
 
 	/**
-	 * 堆栈监听器，
+	 * 堆栈监听器，只在不支持生命周期回调时(API 14以下)使用
 	 * This is were the activityStack listener is set up. The listener will keep track of the
-	 * opened activities and their positions.
+	 * opened activities and their positions. Only used when the activity lifecycle callbacks
+	 * are not available (below API level 14).
 	 */
 
 	private void setupActivityStackListener() {
@@ -182,14 +188,12 @@ class ActivityUtils {
 					Activity activity = activityMonitor.waitForActivity();
 
 					if(activity != null){
-						//从堆栈中删除Activity名
-						if (activitiesStoredInActivityStack.remove(activity.toString())){
-							//从堆栈中移除Activity对象
-							removeActivityFromStack(activity);
-						}
-						//Activity未结束，添加到堆栈中(？？？不知道对不对)
+						//Activity未结束，移动到栈顶，否则移除
 						if(!activity.isFinishing()){
-							addActivityToStack(activity);
+							activityRegistry.push(activity);
+						}
+						else{
+							activityRegistry.remove(activity);
 						}
 					}
 				}
@@ -200,27 +204,14 @@ class ActivityUtils {
 	}
 
 	/**
-	 * 从堆栈中删除一个指定的Activity
-	 * Removes a given activity from the activity stack
-	 * 
-	 * @param activity the activity to remove
+	 * 返回由生命周期回调维护的Activity登记表
+	 * Returns the registry of opened activities, maintained by the activity lifecycle callbacks.
+	 *
+	 * @return the {@code ActivityRegistry}
 	 */
 
-	private void removeActivityFromStack(Activity activity){
-		//遍历堆栈中的每一个Activity
-		Iterator<WeakReference<Activity>> activityStackIterator = activityStack.iterator();
-		while(activityStackIterator.hasNext()){
-			//获取遍历器中的每一个activity
-			Activity activityFromWeakReference = activityStackIterator.next().get();
-			//如果发现堆栈中存在null对象，则移除
-			if(activityFromWeakReference == null){
-				activityStackIterator.remove();
-			}
-			//判断堆栈中的Activity与参数Activity是否相等，相等则删除；
-			if(activity != null && activityFromWeakReference != null && activityFromWeakReference.equals(activity)){
-				activityStackIterator.remove();
-			}
-		}
+	public ActivityRegistry getActivityRegistry(){
+		return activityRegistry;
 	}
 
 	/**
@@ -273,22 +264,6 @@ class ActivityUtils {
 		return getCurrentActivity(true, true);
 	}
 
-	/**
-	 * 新添加一个Activity到stack
-	 * Adds an activity to the stack
-	 * 
-	 * @param activity the activity to add
-	 */
-
-	private void addActivityToStack(Activity activity){
-		//activity名加入堆栈
-		activitiesStoredInActivityStack.push(activity.toString());
-		weakActivityReference = new WeakReference<Activity>(activity);
-		activity = null;
-		//activity弱引用对象加入堆栈
-		activityStack.push(weakActivityReference);
-	}
-
 	/**
 	 * 一直等待，直到出现抓取到一个存活的activity，未找到存活activity则不断迭代循环，有概率导致无限死循环
 	 * 可自行修改添加一个超时时间，避免引发无法循环
@@ -297,8 +272,8 @@ class ActivityUtils {
 	 */
 
 	private final void waitForActivityIfNotAvailable(){
-		// 如果当前堆栈中的activity为空,当初始化时传入的activity为null，可导致该状态
-		if(activityStack.isEmpty() || activityStack.peek().get() == null){
+		// 如果登记表中没有存活的activity,当初始化时传入的activity为null，可导致该状态
+		if(activityRegistry.isEmpty()){
 			// 不断尝试获取当前activity,直到获取到一个存活的activity
 			if (activityMonitor != null) {
 				//获取最新的Activity
@@ -307,13 +282,15 @@ class ActivityUtils {
 				// activityMonitor初始化是为得到当前activity.应用又没有新打开页面，调用该方法就死循环了
 				// 传入一个null的activity对象，在 初始化之后，没打开新的 activity就不断null,死循环了
 				while (activity == null){
-					// 等待300ms
-					sleeper.sleepMini();
-					// 获取最新activity
-					activity = activityMonitor.getLastActivity();
+					// 等待生命周期回调登记activity，登记时立即返回
+					activity = activityRegistry.waitForCurrentActivity(ACTIVITY_MONITOR_CHECK);
+					if(activity == null){
+						// 获取最新activity
+						activity = activityMonitor.getLastActivity();
+					}
 				}
-				// 非空对象加入堆栈
-				addActivityToStack(activity);
+				// 非空对象登记为当前activity
+				activityRegistry.push(activity);
 			}
 			//如果堆栈是活跃的
 			else if(config.trackActivities){
@@ -335,16 +312,17 @@ class ActivityUtils {
 	 */
 	
 	public String getCurrentActivityName(){
-		//如果堆栈中不为空
-		if(!activitiesStoredInActivityStack.isEmpty()){
+		final Activity currentActivity = activityRegistry.getCurrentActivity();
+		//如果登记表不为空
+		if(currentActivity != null){
 			//返回最新activity的名字
-			return activitiesStoredInActivityStack.peek();
+			return currentActivity.toString();
 		}
 		return "";
 	}
 
 	/**
-	 * 获取当前最新的activity,shouldSleepFirst为true,那么等待500ms后在获取,
+	 * 获取当前最新的activity,shouldSleepFirst为true,那么等待界面空闲(最多500ms)后在获取,
 	 * waitForActivity为true那么尝试获取最新的activity,为false则不尝试获取最新的，直接从activity堆栈中获取栈顶的activity返回
 	 * Returns the current {@code Activity}.
 	 *
@@ -354,9 +332,9 @@ class ActivityUtils {
 	 */
 
 	public Activity getCurrentActivity(boolean shouldSleepFirst, boolean waitForActivity) {
-		//是否需要休息
+		//是否需要休息，登记表由生命周期回调实时更新，只需等待界面空闲
 		if(shouldSleepFirst){
-			sleeper.sleep();
+			sleeper.sleepUntilIdle();
 		}
 		//？？
 		if(!config.trackActivities){
@@ -366,9 +344,10 @@ class ActivityUtils {
 		if(waitForActivity){
 			waitForActivityIfNotAvailable();
 		}
-		//非空时，获取堆栈栈顶的activity
-		if(!activityStack.isEmpty()){
-			activity=activityStack.peek().get();
+		//非空时，获取登记表栈顶的activity
+		final Activity currentActivity = activityRegistry.getCurrentActivity();
+		if(currentActivity != null){
+			activity = currentActivity;
 		}
 		//返回最新activity
 		return activity;
@@ -382,7 +361,7 @@ class ActivityUtils {
 	 */
 	
 	public boolean isActivityStackEmpty() {
-		return activityStack.isEmpty();
+		return activityRegistry.isEmpty();
 	}
 
 	/**
@@ -457,10 +436,12 @@ class ActivityUtils {
 	}
 	
 	/**
-	 * 移除Activity监视器
-	 * Removes the ActivityMonitor
+	 * 移除Activity监视器，并注销生命周期回调
+	 * Removes the ActivityMonitor and unregisters the activity lifecycle callbacks
 	 */
 	private void stopActivityMonitor(){
+		//注销生命周期回调
+		activityRegistry.unregister();
 		try {
 			//清理开始期间创建的Activity定时器
 			// Remove the monitor added during startup
@@ -486,6 +467,11 @@ class ActivityUtils {
 			useGoBack(3);
 			return;
 		}
+		//快速关闭模式，不固定休息
+		if(config.fastTeardown && activityRegistry.isRegistered()){
+			finishOpenedActivitiesInBatch();
+			return;
+		}
 		//获取所有存活Activity
 		ArrayList<Activity> activitiesOpened = getAllOpenedActivities();
 		//关闭所有存活Activity
@@ -511,6 +497,25 @@ class ActivityUtils {
 		clearActivityStack();
 	}
 	
+	/**
+	 * 在主线程中一次关闭所有登记的Activity，只等待生命周期回调确认全部销毁
+	 * Finishes all tracked activities in one main thread batch and waits only until the
+	 * lifecycle callbacks confirm that every one of them has been destroyed.
+	 */
+
+	private void finishOpenedActivitiesInBatch(){
+		//关闭所有存活Activity，包括初始Activity
+		if(!activityRegistry.finishAndWaitForDestroyed(inst, getAllOpenedActivities(), Timeout.getSmallTimeout())){
+			Log.d(LOG_TAG, "Not all activities were destroyed before the timeout");
+		}
+		//移除Activity监视器
+		stopActivityMonitor();
+		setRegisterActivities(false);
+		this.activity = null;
+		//清理登记表
+		clearActivityStack();
+	}
+
 	/**
 	 * 返回指定次数
 	 * Sends the back button command a given number of times
@@ -539,10 +544,8 @@ class ActivityUtils {
 	 */
 
 	private void clearActivityStack(){
-		//堆栈清理
-		activityStack.clear();
-		//堆栈中的应用名清理
-		activitiesStoredInActivityStack.clear();
+		//登记表清理
+		activityRegistry.clear();
 	}
 
 	/**
@@ -199,8 +199,8 @@ class Clicker {
 		eventTime = SystemClock.uptimeMillis();
 		event = MotionEvent.obtain(downTime, eventTime, MotionEvent.ACTION_UP, x, y, 0);
 		inst.sendPointerSync(event);
-		//等待500ms
-		sleeper.sleep();
+		//等待界面空闲，最多500ms
+		sleeper.sleepUntilIdle();
 	}
 
 
@@ -269,8 +269,8 @@ class Clicker {
 	 */
 
 	private float[] getClickCoordinates(View view){
-		//休息200ms
-		sleeper.sleep(200);
+		//等待界面空闲，最多200ms
+		sleeper.waitForUiIdle(200);
 		
 		int[] xyLocation = new int[2];
 		float[] xyToClick = new float[2];
@@ -317,8 +317,8 @@ class Clicker {
 		}
 		//发送指定次数的向下按事件
 		for(int i = 0; i < index; i++)
-		{	//休息300ms
-			sleeper.sleepMini();
+		{	//等待界面空闲，最多300ms
+			sleeper.sleepMiniUntilIdle();
 			inst.sendKeyDownUpSync(KeyEvent.KEYCODE_DPAD_DOWN);
 		}
 		//发送确认事件
@@ -331,8 +331,8 @@ class Clicker {
 	 */
 
 	private void openMenu(){
-		//休息300ms
-		sleeper.sleepMini();
+		//等待界面空闲，最多300ms
+		sleeper.sleepMiniUntilIdle();
 		//如果200ms内等待打开菜单失败
 		if(!dialogUtils.waitForDialogToOpen(MINI_WAIT, false)) {
 			try{
@@ -370,8 +370,8 @@ class Clicker {
 	 */
 
 	public void clickOnMenuItem(String text, boolean subMenu){
-		//休息300ms
-		sleeper.sleepMini();
+		//等待界面空闲，最多300ms
+		sleeper.sleepMiniUntilIdle();
 		//
 		TextView textMore = null;
 		//xy坐标数组
@@ -393,9 +393,11 @@ class Clicker {
 		//等待显示指定text的view出现，并获取该view
 		boolean textShown = waiter.waitForText(text, 1, WAIT_TIME, true) != null;
 		//如果设置了子级目录，那么继续查找子级菜单,不关注指定内容，只按照数量大于5,那么找出最右边的菜单点击
-		if(subMenu && (viewFetcher.getCurrentViews(TextView.class, true).size() > 5) && !textShown){
+		//只获取一次当前的TextView
+		ArrayList<TextView> textViews = (subMenu && !textShown) ? viewFetcher.getCurrentViews(TextView.class, true) : null;
+		if(textViews != null && textViews.size() > 5){
 			
-			for(TextView textView : viewFetcher.getCurrentViews(TextView.class, true)){
+			for(TextView textView : textViews){
 				x = xy[0];
 				y = xy[1];
 				textView.getLocationOnScreen(xy);
@@ -419,7 +421,7 @@ class Clicker {
 	 */
 
 	public void clickOnActionBarItem(int resourceId){
-		sleeper.sleep();
+		sleeper.sleepUntilIdle();
 		Activity activity = activityUtils.getCurrentActivity();
 		if(activity != null){
 			//发送点击事件
@@ -530,7 +532,8 @@ class Clicker {
 
 	public void clickOnText(String regex, boolean longClick, int match, boolean scroll, int time) {
 		//等待并获取指定条件的textToClick
-		TextView textToClick = waiter.waitForText(regex, match, Timeout.getSmallTimeout(), scroll, true, false);
+		//等待和滚动查找共用同一个截止时间
+		TextView textToClick = waiter.waitForText(TextView.class, regex, match, Deadline.after(Timeout.getSmallTimeout()), scroll, true);
 		//如果找到，长按指定条件的textToClick
 		if (textToClick != null) {
 			clickOnScreen(textToClick, longClick, time);
@@ -543,7 +546,7 @@ class Clicker {
 			}
 			//如果match<=1,则打印出当前所有的TextView类控件信息,并退出
 			else{
-				ArrayList<TextView> allTextViews = RobotiumUtils.removeInvisibleViews(viewFetcher.getCurrentViews(TextView.class, true));
+				ArrayList<TextView> allTextViews = viewFetcher.removeInvisibleViews(viewFetcher.getCurrentViews(TextView.class, true));
 				allTextViews.addAll((Collection<? extends TextView>) webUtils.getTextViewsFromWebView());
 
 				for (TextView textView : allTextViews) {
@@ -566,13 +569,14 @@ class Clicker {
 
 	public <T extends TextView> void clickOn(Class<T> viewClass, String nameRegex) {
 		//等待并获取指定文本和类型的view
-		T viewToClick = (T) waiter.waitForText(viewClass, nameRegex, 0, Timeout.getSmallTimeout(), true, true, false);
+		//等待和滚动查找共用同一个截止时间
+		T viewToClick = (T) waiter.waitForText(viewClass, nameRegex, 0, Deadline.after(Timeout.getSmallTimeout()), true, true);
 		//如果找到，点击找到的view
 		if (viewToClick != null) {
 			clickOnScreen(viewToClick);
 		//如果未找到，打印日志，记录当前所有textview，并退出；
 		} else {
-			ArrayList <T> allTextViews = RobotiumUtils.removeInvisibleViews(viewFetcher.getCurrentViews(viewClass, true));
+			ArrayList <T> allTextViews = viewFetcher.removeInvisibleViews(viewFetcher.getCurrentViews(viewClass, true));
 
 			for (T view : allTextViews) {
 				Log.d(LOG_TAG, "'" + nameRegex + "' not found. Have found: '" + view.getText() + "'");
@@ -641,7 +645,7 @@ class Clicker {
 			//返回view中的所有view
 			views = viewFetcher.getViews(viewOnLine, true);
 			//去掉view中的隐藏view
-			views = RobotiumUtils.removeInvisibleViews(views);
+			views = viewFetcher.removeInvisibleViews(views);
 			//长按viewOnLine
 			clickOnScreen(viewOnLine, longClick, time);
 		}
@@ -698,7 +702,7 @@ class Clicker {
 			//获取viewGroup中的所有子试图，包括自己
 			views = viewFetcher.getViews(viewOnLine, true);
 			//去掉隐藏view
-			views = RobotiumUtils.removeInvisibleViews(views);
+			views = viewFetcher.removeInvisibleViews(views);
 			//点击指定view
 			clickOnScreen(viewOnLine, longClick, time);
 		}
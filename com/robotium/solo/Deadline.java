@@ -0,0 +1,64 @@
+package com.robotium.solo;
+
+import android.os.SystemClock;
+
+
+/**
+ * 一次操作的截止时间，嵌套的等待、查找和滚动都从剩余时间中消耗，而不是各自重新计时
+ * The deadline of an operation. Nested waits, searches and scrolls consume the time that
+ * is left instead of starting timeouts of their own, so an operation that fails does so
+ * at the deadline its caller asked for.
+ *
+ */
+
+class Deadline {
+	//没有截止时间
+	public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+	//截止时间(uptime)
+	private final long endTime;
+
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param endTime the uptime at which the deadline expires
+	 */
+
+	private Deadline(long endTime) {
+		this.endTime = endTime;
+	}
+
+	/**
+	 * 返回从现在起经过指定时间后到期的截止时间
+	 * Returns a deadline that expires the given amount of time from now.
+	 *
+	 * @param timeout the amount of time in milliseconds
+	 * @return the deadline
+	 */
+
+	public static Deadline after(long timeout) {
+		return new Deadline(SystemClock.uptimeMillis() + Math.max(0, timeout));
+	}
+
+	/**
+	 * 返回到期的时间
+	 * Returns the uptime at which this deadline expires.
+	 *
+	 * @return the uptime in milliseconds, {@code Long.MAX_VALUE} for {@link #NONE}
+	 */
+
+	public long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * 判断是否已经到期
+	 * Returns true if the deadline has expired.
+	 *
+	 * @return true if the deadline has expired
+	 */
+
+	public boolean isExpired() {
+		return this != NONE && SystemClock.uptimeMillis() > endTime;
+	}
+}
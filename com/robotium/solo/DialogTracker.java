@@ -0,0 +1,210 @@
+package com.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+
+/**
+ * 按所属Activity记录打开的对话框窗口。窗口的Context只在窗口第一次出现时解析，窗口集合未变化时直接复用上一次的结果；
+ * 对话框窗口的附着/分离以及Activity窗口的焦点变化会通知等待中的线程
+ * Keeps track of the dialog windows shown on the screen, keyed by the activity that owns
+ * them. The context of a window is resolved once when the window first appears, and the
+ * dialogs of an activity are only recomputed when a window has been added or removed.
+ * A dialog window being detached, or the window of an activity gaining or losing focus
+ * because a dialog was attached or detached, signals the {@link Sleeper}, so dialog waits
+ * are woken up as soon as that happens (API level 18 and above).
+ *
+ */
+
+class DialogTracker {
+	//视图获取工具类
+	private final ViewFetcher viewFetcher;
+	//窗口变化时通知等待中的线程
+	private final Sleeper sleeper;
+	//主线程的Handler，用于在主线程注册回调
+	private final Handler mainHandler;
+	//每个窗口的Context，去掉了ContextThemeWrapper
+	private final Map<View, Context> contextByWindow = new WeakHashMap<View, Context>();
+	//每个Activity的对话框窗口，窗口集合变化时清空
+	private final Map<Activity, ArrayList<View>> dialogsByActivity = new WeakHashMap<Activity, ArrayList<View>>();
+	//已经注册了回调的窗口
+	private final Map<View, Boolean> observedWindows = new WeakHashMap<View, Boolean>();
+	//最近一次读取的窗口及其版本号
+	private View[] windows;
+	private int windowsVersion = -1;
+
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param viewFetcher the {@code ViewFetcher} instance
+	 * @param sleeper the {@code Sleeper} instance
+	 */
+
+	public DialogTracker(ViewFetcher viewFetcher, Sleeper sleeper) {
+		this.viewFetcher = viewFetcher;
+		this.sleeper = sleeper;
+		this.mainHandler = new Handler(Looper.getMainLooper());
+	}
+
+	/**
+	 * 检查给定的Activity是否有打开的对话框
+	 * Checks if the given activity has a dialog open.
+	 *
+	 * @param activity the activity
+	 * @return true if a dialog of the activity is shown
+	 */
+
+	public synchronized boolean isDialogOpen(Activity activity) {
+		return getTopDialog(activity) != null;
+	}
+
+	/**
+	 * 返回给定Activity最上层的对话框窗口
+	 * Returns the root view of the topmost dialog window of the given activity.
+	 *
+	 * @param activity the activity
+	 * @return the root view of the topmost shown dialog window or {@code null} if no dialog is shown
+	 */
+
+	public synchronized View getTopDialog(Activity activity) {
+		if(activity == null){
+			return null;
+		}
+		final ArrayList<View> dialogs = getDialogs(activity);
+		for(int i = dialogs.size() - 1; i >= 0; i--){
+			if(dialogs.get(i).isShown()){
+				return dialogs.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 返回给定Activity的对话框窗口，窗口集合未变化时返回上一次的结果
+	 * Returns the dialog windows of the given activity. They are only recomputed when a window
+	 * has been added or removed since the previous call.
+	 *
+	 * @param activity the activity
+	 * @return the dialog windows of the activity, in window order
+	 */
+
+	private ArrayList<View> getDialogs(Activity activity) {
+		refreshWindows();
+		ArrayList<View> dialogs = dialogsByActivity.get(activity);
+
+		if(dialogs == null){
+			dialogs = new ArrayList<View>();
+			final View activityDecorView = activity.getWindow().getDecorView();
+			observeFocus(activityDecorView);
+
+			if(windows != null){
+				for(View window : windows){
+					if(window != null && window != activityDecorView && isOwnedBy(window, activity)){
+						dialogs.add(window);
+						observeDetach(window);
+					}
+				}
+			}
+			dialogsByActivity.put(activity, dialogs);
+		}
+		return dialogs;
+	}
+
+	/**
+	 * 重新读取窗口，窗口集合变化时清空按Activity保存的结果
+	 * Reads the windows and forgets the dialogs per activity if a window has been added or removed.
+	 */
+
+	private void refreshWindows() {
+		windows = viewFetcher.getWindowDecorViews();
+		final int version = viewFetcher.getWindowDecorViewsVersion();
+
+		if(version != windowsVersion){
+			windowsVersion = version;
+			dialogsByActivity.clear();
+		}
+	}
+
+	/**
+	 * 判断窗口是否属于给定的Activity，窗口的Context只解析一次
+	 * Checks if the given window belongs to the given activity. The context of the window is only resolved once.
+	 *
+	 * @param window the root view of the window
+	 * @param activity the activity
+	 * @return true if the window belongs to the activity
+	 */
+
+	private boolean isOwnedBy(View window, Activity activity) {
+		Context windowContext = contextByWindow.get(window);
+
+		if(windowContext == null){
+			windowContext = window.getContext();
+			// 获取需要的基础Context
+			if (windowContext instanceof ContextThemeWrapper) {
+				windowContext = ((ContextThemeWrapper) windowContext).getBaseContext();
+			}
+			contextByWindow.put(window, windowContext);
+		}
+		return activity.equals(windowContext) || activity.getBaseContext().equals(windowContext);
+	}
+
+	/**
+	 * 在Activity窗口上注册焦点变化回调：对话框打开或关闭时Activity窗口的焦点随之变化
+	 * Registers a focus change listener with the window of an activity. The window loses focus
+	 * when a dialog is attached and regains it when the dialog is detached.
+	 *
+	 * @param activityDecorView the root view of the window of the activity
+	 */
+
+	private void observeFocus(final View activityDecorView) {
+		if(android.os.Build.VERSION.SDK_INT < 18 || observedWindows.containsKey(activityDecorView)){
+			return;
+		}
+		observedWindows.put(activityDecorView, Boolean.TRUE);
+		mainHandler.post(new Runnable() {
+			public void run() {
+				activityDecorView.getViewTreeObserver().addOnWindowFocusChangeListener(new ViewTreeObserver.OnWindowFocusChangeListener() {
+					public void onWindowFocusChanged(boolean hasFocus) {
+						sleeper.signalChange();
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * 在对话框窗口上注册分离回调
+	 * Registers a listener that is called when the given dialog window is detached.
+	 *
+	 * @param dialogWindow the root view of the dialog window
+	 */
+
+	private void observeDetach(final View dialogWindow) {
+		if(android.os.Build.VERSION.SDK_INT < 18 || observedWindows.containsKey(dialogWindow)){
+			return;
+		}
+		observedWindows.put(dialogWindow, Boolean.TRUE);
+		mainHandler.post(new Runnable() {
+			public void run() {
+				dialogWindow.getViewTreeObserver().addOnWindowAttachListener(new ViewTreeObserver.OnWindowAttachListener() {
+					public void onWindowAttached() {
+						sleeper.signalChange();
+					}
+
+					public void onWindowDetached() {
+						sleeper.signalChange();
+					}
+				});
+			}
+		});
+	}
+}
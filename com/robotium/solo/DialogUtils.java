@@ -5,7 +5,6 @@ import android.app.Activity;
 import android.app.Instrumentation;
 import android.content.Context;
 import android.os.SystemClock;
-import android.view.ContextThemeWrapper;
 import android.view.View;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
@@ -30,8 +29,8 @@ class DialogUtils {
 	private final Sleeper sleeper;
 	//超时对话框自动关闭时间
 	private final static int TIMEOUT_DIALOG_TO_CLOSE = 1000;
-	//最小休眠时间
-	private final int MINISLEEP = 200;
+	//按所属Activity记录对话框窗口
+	private final DialogTracker dialogTracker;
 
 	/**
 	 * Constructs this object.
@@ -46,6 +45,7 @@ class DialogUtils {
 		this.activityUtils = activityUtils;
 		this.viewFetcher = viewFetcher;
 		this.sleeper = sleeper;
+		this.dialogTracker = new DialogTracker(viewFetcher, sleeper);
 	}
 
 
@@ -62,13 +62,17 @@ class DialogUtils {
 		waitForDialogToOpen(TIMEOUT_DIALOG_TO_CLOSE, false);
 		//得出超时时间
 		final long endTime = SystemClock.uptimeMillis() + timeout;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForDialogToClose");
 		//在规定时间内，检查弹框是否关闭了
 		while (SystemClock.uptimeMillis() < endTime) {
+			final int changeCount = sleeper.getChangeCount();
 
 			if(!isDialogOpen()){
+				poll.done();
 				return true;
 			}
-			sleeper.sleep(MINISLEEP);
+			//对话框窗口分离时立即重新检查
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 		return false;
 	}
@@ -90,20 +94,24 @@ class DialogUtils {
 		final long endTime = SystemClock.uptimeMillis() + timeout;
 		//判断是否已打开
 		boolean dialogIsOpen = isDialogOpen();
-		//是否需要先等待500ms
+		//是否需要先等待界面空闲，最多500ms
 		if(sleepFirst)
-			sleeper.sleep();
+			sleeper.sleepUntilIdle();
 		//检查对话框如果已打开，返回true
 		if(dialogIsOpen){
 			return true;
 		}
+		final Sleeper.Poll poll = sleeper.startPoll("waitForDialogToOpen");
 		//在规定时间内，循环检查对话框是否已打开
 		while (SystemClock.uptimeMillis() < endTime) {
+			final int changeCount = sleeper.getChangeCount();
 
 			if(isDialogOpen()){
+				poll.done();
 				return true;
 			}
-			sleeper.sleepMini();
+			//对话框窗口附着时立即重新检查
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 		return false;
 	}
@@ -116,55 +124,8 @@ class DialogUtils {
 	 */
 
 	private boolean isDialogOpen(){
-		//获取当前Activity
-		final Activity activity = activityUtils.getCurrentActivity(false);
-		//获取当前Activity上的所有试图
-		final View[] views = viewFetcher.getWindowDecorViews();
-		//获取views中的DecorView对象，DecorView是根
-		View view = viewFetcher.getRecentDecorView(views);	
-		// 遍历检查当前Activity上是否有打开的弹框，但这个弹框不是DecorView
-		if(!isDialog(activity, view)){
-			for(View v : views){
-				if(isDialog(activity, v)){
-					return true;
-				}
-			}
-		}
-		else {
-			return true;
-		}
-		return false;
-	}
-	
-	/**
-	 * 判断decorView是否是给定activity的，即检查弹框是否是当前activity的
-	 * Checks that the specified DecorView and the Activity DecorView are not equal.
-	 * 
-	 * @param activity the activity which DecorView is to be compared
-	 * @param decorView the DecorView to compare
-	 * @return true if not equal
-	 */
-	
-	private boolean isDialog(Activity activity, View decorView){
-		//null判断，检查decorView是都可见的，不可见直接返回false
-		if(decorView == null || !decorView.isShown() || activity == null){
-			return false;
-		}
-		// 获取Context
-		Context viewContext = null;
-		if(decorView != null){
-			viewContext = decorView.getContext();
-		}
-		// 获取需要的基础Context
-		if (viewContext instanceof ContextThemeWrapper) {
-			ContextThemeWrapper ctw = (ContextThemeWrapper) viewContext;
-			viewContext = ctw.getBaseContext();
-		}
-		// 获取activity对应的Context
-		Context activityContext = activity;
-		Context activityBaseContext = activity.getBaseContext();
-		// 检查Context 是否是一致的,并且 activity不是在弹框中的
-		return (activityContext.equals(viewContext) || activityBaseContext.equals(viewContext)) && (decorView != activity.getWindow().getDecorView());
+		//获取当前Activity，检查它是否有显示中的对话框窗口
+		return dialogTracker.isDialogOpen(activityUtils.getCurrentActivity(false));
 	}
 
 	/**
@@ -195,8 +156,9 @@ class DialogUtils {
 			inputMethodManager.hideSoftInputFromWindow(editText.getWindowToken(), 0);
 			return;
 		}
-		//如果EditText为空，则获取当前的焦点View
-		View focusedView = activity.getCurrentFocus();
+		//如果EditText为空，则获取当前的焦点View，对话框打开时焦点在对话框窗口中
+		final View dialogWindow = dialogTracker.getTopDialog(activity);
+		View focusedView = dialogWindow != null ? dialogWindow.findFocus() : activity.getCurrentFocus();
 		// 如果获取的 View不是EditText，则在当前activity上找到最新EditTextview，并赋值给焦点view
 		if(!(focusedView instanceof EditText)) {
 			//获取最新可见试图，并赋值给焦点view
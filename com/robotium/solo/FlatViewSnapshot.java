@@ -0,0 +1,310 @@
+package com.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import android.view.View;
+import android.view.ViewParent;
+import android.widget.TextView;
+
+
+/**
+ * 在主线程中一次性采集的view状态，按列保存在基本类型数组中，采集后不再变化
+ * The state of the views of the hierarchy, captured on the main thread in one pass and
+ * stored column by column: ids, class indices, parent indices, locations on the screen,
+ * heights, drawing times, visibility, tags and the text, error and hint of text views. Once
+ * captured the snapshot is immutable, so queries can run on the instrumentation thread
+ * without reading live {@code View} state. Views that were not captured, e.g. those created
+ * for web content, are read live.
+ *
+ */
+
+class FlatViewSnapshot {
+	//没有父view或者父view不在快照中
+	static final int NO_PARENT = -1;
+	//采集的view，顺序与遍历顺序一致
+	private final View[] views;
+	//view在views中的位置
+	private final Map<View, Integer> indexByView;
+	//资源id
+	private final int[] ids;
+	//具体类型在classes中的位置
+	private final int[] classIndices;
+	private final Class<?>[] classes;
+	//父view在views中的位置
+	private final int[] parentIndices;
+	//在屏幕上的位置和高度
+	private final int[] lefts;
+	private final int[] tops;
+	private final int[] heights;
+	//最近一次绘制的时间
+	private final long[] drawingTimes;
+	//view在屏幕上显示(isShown)
+	private final boolean[] shown;
+	//tag，没有tag时为null
+	private final Object[] tags;
+	//TextView的文本、错误提示和hint的副本，不是TextView时为null
+	private final String[] texts;
+	private final String[] errors;
+	private final String[] hints;
+
+
+	/**
+	 * 采集给定的view，必须在主线程中调用
+	 * Captures the given views. Must be called on the main thread.
+	 *
+	 * @param capturedViews the views to capture, in traversal order
+	 */
+
+	FlatViewSnapshot(ArrayList<View> capturedViews) {
+		final int size = capturedViews.size();
+		final Map<Class<?>, Integer> indexByClass = new HashMap<Class<?>, Integer>();
+		final ArrayList<Class<?>> classList = new ArrayList<Class<?>>();
+		final int[] xy = new int[2];
+		views = capturedViews.toArray(new View[size]);
+		indexByView = new IdentityHashMap<View, Integer>(size);
+		ids = new int[size];
+		classIndices = new int[size];
+		parentIndices = new int[size];
+		lefts = new int[size];
+		tops = new int[size];
+		heights = new int[size];
+		drawingTimes = new long[size];
+		shown = new boolean[size];
+		tags = new Object[size];
+		texts = new String[size];
+		errors = new String[size];
+		hints = new String[size];
+
+		for(int i = 0; i < size; i++){
+			indexByView.put(views[i], Integer.valueOf(i));
+		}
+		for(int i = 0; i < size; i++){
+			final View view = views[i];
+			ids[i] = view.getId();
+			Integer classIndex = indexByClass.get(view.getClass());
+			if(classIndex == null){
+				classIndex = Integer.valueOf(classList.size());
+				indexByClass.put(view.getClass(), classIndex);
+				classList.add(view.getClass());
+			}
+			classIndices[i] = classIndex.intValue();
+			final ViewParent parent = view.getParent();
+			final Integer parentIndex = parent instanceof View ? indexByView.get(parent) : null;
+			parentIndices[i] = parentIndex != null ? parentIndex.intValue() : NO_PARENT;
+			view.getLocationOnScreen(xy);
+			lefts[i] = xy[0];
+			tops[i] = xy[1];
+			heights[i] = view.getHeight();
+			drawingTimes[i] = view.getDrawingTime();
+			shown[i] = view.isShown();
+			tags[i] = view.getTag();
+			if(view instanceof TextView){
+				//复制文本，Spannable在主线程中会原地改变
+				final TextView textView = (TextView) view;
+				texts[i] = toString(textView.getText());
+				errors[i] = toString(textView.getError());
+				hints[i] = toString(textView.getHint());
+			}
+		}
+		classes = classList.toArray(new Class<?>[classList.size()]);
+	}
+
+	/**
+	 * 返回view在快照中的位置
+	 * Returns the position of the given view in this snapshot.
+	 *
+	 * @param view the view
+	 * @return the position of the view or -1 if it was not captured
+	 */
+
+	public int indexOf(View view) {
+		final Integer index = indexByView.get(view);
+		return index != null ? index.intValue() : -1;
+	}
+
+	/**
+	 * 返回采集时的资源id
+	 * Returns the id the view at the given position had when it was captured.
+	 *
+	 * @param index the position of the view
+	 * @return the resource id
+	 */
+
+	public int getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * 返回view的具体类型
+	 * Returns the concrete class of the view at the given position.
+	 *
+	 * @param index the position of the view
+	 * @return the class of the view
+	 */
+
+	public Class<?> getViewClass(int index) {
+		return classes[classIndices[index]];
+	}
+
+	/**
+	 * 返回父view在快照中的位置
+	 * Returns the position of the parent of the view at the given position.
+	 *
+	 * @param index the position of the view
+	 * @return the position of the parent or {@link #NO_PARENT}
+	 */
+
+	public int getParentIndex(int index) {
+		return parentIndices[index];
+	}
+
+	/**
+	 * 返回采集时的tag
+	 * Returns the tag the view at the given position had when it was captured.
+	 *
+	 * @param index the position of the view
+	 * @return the tag or {@code null}
+	 */
+
+	public Object getTag(int index) {
+		return tags[index];
+	}
+
+	/**
+	 * 返回采集时TextView的文本
+	 * Returns the text the text view at the given position had when it was captured.
+	 *
+	 * @param index the position of the view
+	 * @return the captured text, or {@code null} if the view is not a {@code TextView}
+	 */
+
+	public String getText(int index) {
+		return texts[index];
+	}
+
+	/**
+	 * 返回采集时TextView的错误提示
+	 * Returns the error the text view at the given position had when it was captured.
+	 *
+	 * @param index the position of the view
+	 * @return the captured error, or {@code null} if there was none
+	 */
+
+	public String getError(int index) {
+		return errors[index];
+	}
+
+	/**
+	 * 返回采集时TextView的hint
+	 * Returns the hint the text view at the given position had when it was captured.
+	 *
+	 * @param index the position of the view
+	 * @return the captured hint, or {@code null} if there was none
+	 */
+
+	public String getHint(int index) {
+		return hints[index];
+	}
+
+	/**
+	 * 判断view在采集时是否在屏幕上显示，不在快照中的view读取实时状态
+	 * Checks if the given view was shown when it was captured. A view that was not captured is checked live.
+	 *
+	 * @param view the view to check
+	 * @return true if the view is shown
+	 */
+
+	public boolean isShown(View view) {
+		final int index = indexOf(view);
+		return index >= 0 ? shown[index] : view.isShown();
+	}
+
+	/**
+	 * 用采集的文本检查TextView是否匹配，规则与{@link TextMatcher#matches(TextView)}相同
+	 * Checks the captured text of the given view against a matcher, following the rules of
+	 * {@link TextMatcher#matches(TextView)}. A view that was not captured is checked live.
+	 *
+	 * @param textMatcher the matcher
+	 * @param view the view to check
+	 * @return true if the view matches
+	 */
+
+	public boolean matches(TextMatcher textMatcher, TextView view) {
+		final int index = indexOf(view);
+		if(index < 0){
+			return textMatcher.matches(view);
+		}
+		return textMatcher.matches(texts[index] != null ? texts[index] : "", errors[index], hints[index]);
+	}
+
+	/**
+	 * 返回采集时view在屏幕上的位置，不在快照中的view读取实时位置
+	 * Returns the location on the screen the given view had when it was captured. A view that
+	 * was not captured is read live.
+	 *
+	 * @param view the view
+	 * @param location an array of two integers to store the location in
+	 */
+
+	public void getLocationOnScreen(View view, int[] location) {
+		final int index = indexOf(view);
+		if(index < 0){
+			view.getLocationOnScreen(location);
+			return;
+		}
+		location[0] = lefts[index];
+		location[1] = tops[index];
+	}
+
+	/**
+	 * 返回采集时view的高度，不在快照中的view读取实时状态
+	 * Returns the height the given view had when it was captured. A view that was not captured is read live.
+	 *
+	 * @param view the view
+	 * @return the height of the view
+	 */
+
+	public int getHeight(View view) {
+		final int index = indexOf(view);
+		return index >= 0 ? heights[index] : view.getHeight();
+	}
+
+	/**
+	 * 返回采集时view最近一次绘制的时间，不在快照中的view读取实时状态
+	 * Returns the drawing time the given view had when it was captured. A view that was not captured is read live.
+	 *
+	 * @param view the view
+	 * @return the drawing time of the view
+	 */
+
+	public long getDrawingTime(View view) {
+		final int index = indexOf(view);
+		return index >= 0 ? drawingTimes[index] : view.getDrawingTime();
+	}
+
+	/**
+	 * 返回采集时在屏幕上显示的view，调用者可以修改返回的列表
+	 * Returns the views that were shown when they were captured, without reading live view state.
+	 *
+	 * @param views the views to filter
+	 * @return a new list with the views that were shown
+	 */
+
+	public <T extends View> ArrayList<T> removeInvisibleViews(Iterable<T> views) {
+		final ArrayList<T> shownViews = new ArrayList<T>();
+
+		for(T view : views){
+			if(view != null && isShown(view)){
+				shownViews.add(view);
+			}
+		}
+		return shownViews;
+	}
+
+	//复制文本
+	private static String toString(CharSequence text) {
+		return text != null ? text.toString() : null;
+	}
+}
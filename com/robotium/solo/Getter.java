@@ -69,7 +69,7 @@ class Getter {
 
 	public <T extends TextView> T getView(Class<T> classToFilterBy, String text, boolean onlyVisible) {
 		//通过waiter工具类，在1s内找到指定类型view
-		T viewToReturn = (T) waiter.waitForText(classToFilterBy, text, 0, Timeout.getSmallTimeout(), false, onlyVisible, false);
+		T viewToReturn = (T) waiter.waitForText(classToFilterBy, text, 0, Timeout.getSmallTimeout(), false, onlyVisible);
 		//没找到，则记录日志并退出
 		if(viewToReturn == null)
 			Assert.fail(classToFilterBy.getSimpleName() + " with text: '" + text + "' is not found!");
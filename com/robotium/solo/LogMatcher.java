@@ -0,0 +1,297 @@
+package com.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+/**
+ * 多模式日志匹配器，普通文本模式编译成一个Aho-Corasick自动机，一次扫描日志行即可匹配全部文本模式，
+ * 含有正则元字符的模式单独按正则表达式匹配
+ * Matches a log line against many patterns at once. Patterns without regular expression
+ * metacharacters are compiled into one Aho-Corasick automaton, so all of them are matched
+ * in a single pass over the line. The remaining patterns fall back to {@link Pattern}.
+ * Patterns that are not valid regular expressions are matched as plain text.
+ *
+ */
+
+class LogMatcher {
+	//正则表达式的元字符
+	private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+	//自动机的根节点
+	private static final int ROOT = 0;
+
+	//每个节点的出边，字符按升序排列，用二分查找
+	private char[][] edgeChars;
+	private int[][] edgeTargets;
+	private int[] edgeCounts;
+	//失配时跳转的节点
+	private int[] failures;
+	//在节点处结束的模式，包括沿失配链可以到达的模式
+	private int[][] outputs;
+	//节点数量
+	private int nodeCount;
+
+	//按正则表达式匹配的模式及其序号
+	private final Pattern[] regexes;
+	private final int[] regexIndices;
+	//每个模式最近一次匹配的行号，用于同一行中同一模式只报告一次
+	private final long[] lastMatchedLine;
+	private long lineNumber;
+
+
+	/**
+	 * 编译给定的模式
+	 * Compiles the given patterns.
+	 *
+	 * @param patterns the patterns, interpreted as regular expressions
+	 */
+
+	LogMatcher(String[] patterns) {
+		edgeChars = new char[16][];
+		edgeTargets = new int[16][];
+		edgeCounts = new int[16];
+		outputs = new int[16][];
+		nodeCount = 1;
+		lastMatchedLine = new long[patterns.length];
+
+		final ArrayList<Pattern> regexList = new ArrayList<Pattern>();
+		final ArrayList<Integer> regexIndexList = new ArrayList<Integer>();
+
+		for(int i = 0; i < patterns.length; i++){
+			lastMatchedLine[i] = -1;
+			final String literal = toLiteral(patterns[i]);
+			if(literal != null){
+				addLiteral(literal, i);
+			}
+			else{
+				regexList.add(Pattern.compile(patterns[i]));
+				regexIndexList.add(Integer.valueOf(i));
+			}
+		}
+		regexes = regexList.toArray(new Pattern[regexList.size()]);
+		regexIndices = new int[regexIndexList.size()];
+		for(int i = 0; i < regexIndices.length; i++){
+			regexIndices[i] = regexIndexList.get(i).intValue();
+		}
+		buildFailures();
+	}
+
+	/**
+	 * 在一行日志中匹配所有模式，每个模式在一行中最多报告一次
+	 * Matches all patterns against the given line. Each pattern is reported at most once per line.
+	 *
+	 * @param line the log line
+	 * @param matchedPatterns receives the indices of the patterns that match, must hold one entry per pattern
+	 * @return the number of matched patterns written to {@code matchedPatterns}
+	 */
+
+	public int match(String line, int[] matchedPatterns) {
+		lineNumber++;
+		int matchCount = 0;
+		int node = ROOT;
+
+		//空文本模式匹配任何行
+		if(outputs[ROOT] != null){
+			for(int patternIndex : outputs[ROOT]){
+				lastMatchedLine[patternIndex] = lineNumber;
+				matchedPatterns[matchCount++] = patternIndex;
+			}
+		}
+		for(int i = 0; i < line.length(); i++){
+			final char c = line.charAt(i);
+			int next = getEdge(node, c);
+			while(next < 0 && node != ROOT){
+				node = failures[node];
+				next = getEdge(node, c);
+			}
+			node = next < 0 ? ROOT : next;
+
+			final int[] output = outputs[node];
+			if(output != null){
+				for(int patternIndex : output){
+					if(lastMatchedLine[patternIndex] != lineNumber){
+						lastMatchedLine[patternIndex] = lineNumber;
+						matchedPatterns[matchCount++] = patternIndex;
+					}
+				}
+			}
+		}
+		for(int i = 0; i < regexes.length; i++){
+			if(regexes[i].matcher(line).find()){
+				matchedPatterns[matchCount++] = regexIndices[i];
+			}
+		}
+		return matchCount;
+	}
+
+	/**
+	 * 返回模式对应的普通文本，模式含有正则元字符时返回null，不是合法正则表达式时按普通文本处理
+	 * Returns the plain text a pattern matches, or {@code null} if it has to be matched as a
+	 * regular expression. Patterns that are not valid regular expressions are plain text.
+	 *
+	 * @param pattern the pattern
+	 * @return the plain text or {@code null}
+	 */
+
+	private static String toLiteral(String pattern) {
+		boolean hasMetacharacter = false;
+		for(int i = 0; i < pattern.length() && !hasMetacharacter; i++){
+			hasMetacharacter = METACHARACTERS.indexOf(pattern.charAt(i)) >= 0;
+		}
+		if(!hasMetacharacter){
+			return pattern;
+		}
+		try{
+			Pattern.compile(pattern);
+		}catch(PatternSyntaxException e){
+			return pattern;
+		}
+		return null;
+	}
+
+	/**
+	 * 把普通文本模式加入自动机
+	 * Adds a plain text pattern to the automaton.
+	 *
+	 * @param literal the text
+	 * @param patternIndex the index of the pattern
+	 */
+
+	private void addLiteral(String literal, int patternIndex) {
+		int node = ROOT;
+		for(int i = 0; i < literal.length(); i++){
+			final char c = literal.charAt(i);
+			int next = getEdge(node, c);
+			if(next < 0){
+				next = newNode();
+				addEdge(node, c, next);
+			}
+			node = next;
+		}
+		outputs[node] = append(outputs[node], patternIndex);
+	}
+
+	/**
+	 * 按广度优先顺序计算失配跳转，并合并失配链上的输出
+	 * Computes the failure links in breadth-first order and merges the outputs along them.
+	 */
+
+	private void buildFailures() {
+		failures = new int[nodeCount];
+		final int[] queue = new int[nodeCount];
+		int head = 0;
+		int tail = 0;
+
+		for(int e = 0; e < edgeCounts[ROOT]; e++){
+			final int child = edgeTargets[ROOT][e];
+			failures[child] = ROOT;
+			queue[tail++] = child;
+		}
+		while(head < tail){
+			final int node = queue[head++];
+			for(int e = 0; e < edgeCounts[node]; e++){
+				final char c = edgeChars[node][e];
+				final int child = edgeTargets[node][e];
+				int failure = failures[node];
+				int next = getEdge(failure, c);
+				while(next < 0 && failure != ROOT){
+					failure = failures[failure];
+					next = getEdge(failure, c);
+				}
+				failures[child] = next < 0 || next == child ? ROOT : next;
+
+				final int[] inherited = outputs[failures[child]];
+				if(inherited != null){
+					for(int patternIndex : inherited){
+						outputs[child] = append(outputs[child], patternIndex);
+					}
+				}
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	/**
+	 * 返回节点在给定字符上的出边目标
+	 * Returns the target of the edge of the given node for the given character.
+	 *
+	 * @return the target node or -1 if there is no such edge
+	 */
+
+	private int getEdge(int node, char c) {
+		final char[] chars = edgeChars[node];
+		int low = 0;
+		int high = edgeCounts[node] - 1;
+		while(low <= high){
+			final int middle = (low + high) >>> 1;
+			if(chars[middle] < c){
+				low = middle + 1;
+			}
+			else if(chars[middle] > c){
+				high = middle - 1;
+			}
+			else{
+				return edgeTargets[node][middle];
+			}
+		}
+		return -1;
+	}
+
+	//按字符顺序插入出边
+	private void addEdge(int node, char c, int target) {
+		final int count = edgeCounts[node];
+		if(edgeChars[node] == null){
+			edgeChars[node] = new char[2];
+			edgeTargets[node] = new int[2];
+		}
+		else if(count == edgeChars[node].length){
+			final char[] chars = new char[count * 2];
+			final int[] targets = new int[count * 2];
+			System.arraycopy(edgeChars[node], 0, chars, 0, count);
+			System.arraycopy(edgeTargets[node], 0, targets, 0, count);
+			edgeChars[node] = chars;
+			edgeTargets[node] = targets;
+		}
+		int position = count;
+		while(position > 0 && edgeChars[node][position - 1] > c){
+			edgeChars[node][position] = edgeChars[node][position - 1];
+			edgeTargets[node][position] = edgeTargets[node][position - 1];
+			position--;
+		}
+		edgeChars[node][position] = c;
+		edgeTargets[node][position] = target;
+		edgeCounts[node] = count + 1;
+	}
+
+	//新建一个节点，必要时扩容
+	private int newNode() {
+		if(nodeCount == edgeCounts.length){
+			final int capacity = nodeCount * 2;
+			final char[][] chars = new char[capacity][];
+			final int[][] targets = new int[capacity][];
+			final int[] counts = new int[capacity];
+			final int[][] nodeOutputs = new int[capacity][];
+			System.arraycopy(edgeChars, 0, chars, 0, nodeCount);
+			System.arraycopy(edgeTargets, 0, targets, 0, nodeCount);
+			System.arraycopy(edgeCounts, 0, counts, 0, nodeCount);
+			System.arraycopy(outputs, 0, nodeOutputs, 0, nodeCount);
+			edgeChars = chars;
+			edgeTargets = targets;
+			edgeCounts = counts;
+			outputs = nodeOutputs;
+		}
+		return nodeCount++;
+	}
+
+	//在数组末尾追加一个元素
+	private static int[] append(int[] array, int value) {
+		if(array == null){
+			return new int[]{value};
+		}
+		final int[] appended = new int[array.length + 1];
+		System.arraycopy(array, 0, appended, 0, array.length);
+		appended[array.length] = value;
+		return appended;
+	}
+}
@@ -0,0 +1,262 @@
+package com.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import android.os.SystemClock;
+
+
+/**
+ * 日志监视，预先注册多个模式，logcat的每一行只扫描一次，匹配结果带时间记录下来供之后查询
+ * Watches the log for several patterns that are registered up front. Every log line is
+ * scanned once for all patterns, and matches are recorded together with the time the line
+ * was read, so later assertions can query them without rescanning the log. Created by
+ * {@link Solo#watchLog(String...)}.
+ * Requires read logs permission (android.permission.READ_LOGS) in AndroidManifest.xml of the application under test.
+ *
+ */
+
+public class LogWatch {
+	//监视的模式
+	private final String[] patterns;
+	//模式在patterns中的位置
+	private final Map<String, Integer> indexByPattern;
+	//所有模式编译成的匹配器，只在持有本对象锁时使用
+	private final LogMatcher logMatcher;
+	//每个模式的匹配结果
+	private final List<ArrayList<Match>> matches;
+	//匹配器输出的模式序号
+	private final int[] matchedPatterns;
+	private final LogcatReader logcatReader;
+	//logcat读取线程是否在运行，由LogcatReader设置
+	private boolean readerRunning;
+
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param logcatReader the {@code LogcatReader} that feeds the log lines
+	 * @param patterns the patterns to watch for, interpreted as regular expressions
+	 */
+
+	LogWatch(LogcatReader logcatReader, String[] patterns) {
+		this.logcatReader = logcatReader;
+		this.patterns = patterns.clone();
+		this.logMatcher = new LogMatcher(this.patterns);
+		this.matchedPatterns = new int[this.patterns.length];
+		this.indexByPattern = new HashMap<String, Integer>();
+		this.matches = new ArrayList<ArrayList<Match>>(this.patterns.length);
+
+		for(int i = 0; i < this.patterns.length; i++){
+			indexByPattern.put(this.patterns[i], Integer.valueOf(i));
+			matches.add(new ArrayList<Match>());
+		}
+	}
+
+	/**
+	 * 等待指定模式匹配到日志。logcat已经结束时先重新启动，等待期间logcat结束(例如没有读取日志的权限)时立即返回
+	 * Waits for the given pattern to match a log line. The logcat process is started again if
+	 * it has ended, and the wait returns as soon as it ends during the wait, e.g. because the
+	 * permission to read the log is missing.
+	 *
+	 * @param pattern one of the patterns of this watch
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @return {@code true} if the pattern has matched and {@code false} if it has not matched before the timeout
+	 */
+
+	public boolean waitFor(String pattern, int timeout) {
+		final long endTime = SystemClock.uptimeMillis() + timeout;
+		final int index = indexOf(pattern);
+		//在持有本对象锁之前调用，与读取线程的加锁顺序一致
+		logcatReader.ensureRunning(this);
+
+		synchronized (this) {
+			return awaitMatch(matches.get(index), endTime);
+		}
+	}
+
+	/**
+	 * 等待所有模式都匹配到日志，logcat的处理与{@link #waitFor(String, int)}相同
+	 * Waits for all patterns of this watch to match a log line. The logcat process is handled
+	 * as in {@link #waitFor(String, int)}.
+	 *
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @return {@code true} if all patterns have matched and {@code false} if they have not matched before the timeout
+	 */
+
+	public boolean waitForAll(int timeout) {
+		final long endTime = SystemClock.uptimeMillis() + timeout;
+		logcatReader.ensureRunning(this);
+
+		synchronized (this) {
+			for(ArrayList<Match> matchesOfPattern : matches){
+				if(!awaitMatch(matchesOfPattern, endTime)){
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 判断指定模式是否已经匹配到日志
+	 * Checks if the given pattern has matched a log line.
+	 *
+	 * @param pattern one of the patterns of this watch
+	 * @return {@code true} if the pattern has matched
+	 */
+
+	public synchronized boolean hasMatched(String pattern) {
+		return !matches.get(indexOf(pattern)).isEmpty();
+	}
+
+	/**
+	 * 返回指定模式的所有匹配，按日志顺序排列
+	 * Returns the matches of the given pattern, in log order.
+	 *
+	 * @param pattern one of the patterns of this watch
+	 * @return a copy of the matches of the pattern
+	 */
+
+	public synchronized List<Match> getMatches(String pattern) {
+		return Collections.unmodifiableList(new ArrayList<Match>(matches.get(indexOf(pattern))));
+	}
+
+	/**
+	 * 停止监视，已经记录的匹配仍然可以查询
+	 * Stops watching the log. The matches that have been recorded can still be queried.
+	 */
+
+	public void stop() {
+		logcatReader.removeWatch(this);
+	}
+
+	/**
+	 * 在logcat读取线程中对新读取的一行进行匹配
+	 * Matches a log line. Called by the {@code LogcatReader} for every line it reads.
+	 *
+	 * @param line the log line
+	 * @param time the uptime in milliseconds when the line was read
+	 */
+
+	synchronized void onLine(String line, long time) {
+		final int matchCount = logMatcher.match(line, matchedPatterns);
+		if(matchCount == 0){
+			return;
+		}
+		for(int i = 0; i < matchCount; i++){
+			final int patternIndex = matchedPatterns[i];
+			matches.get(patternIndex).add(new Match(patterns[patternIndex], line, time));
+		}
+		notifyAll();
+	}
+
+	/**
+	 * 由LogcatReader在logcat启动和结束时调用
+	 * Called by the {@code LogcatReader} when the logcat process has been started or has ended.
+	 *
+	 * @param running {@code true} if the reader is running
+	 */
+
+	synchronized void setReaderRunning(boolean running) {
+		readerRunning = running;
+		notifyAll();
+	}
+
+	/**
+	 * 等待给定的匹配列表不为空，超时或者logcat已经结束时返回false，必须持有本对象锁
+	 * Waits for the given list of matches to become non-empty. Must be called with the lock of this object held.
+	 *
+	 * @param matchesOfPattern the matches of one pattern
+	 * @param endTime the uptime at which the wait times out
+	 * @return {@code true} if the pattern has matched and {@code false} if the wait timed out or the reader has ended
+	 */
+
+	private boolean awaitMatch(ArrayList<Match> matchesOfPattern, long endTime) {
+		while(matchesOfPattern.isEmpty()){
+			final long remaining = endTime - SystemClock.uptimeMillis();
+			if(remaining <= 0 || !readerRunning){
+				return false;
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 返回模式的位置
+	 * Returns the position of the given pattern.
+	 *
+	 * @param pattern the pattern
+	 * @return the position of the pattern
+	 * @throws IllegalArgumentException if the pattern is not watched by this object
+	 */
+
+	private int indexOf(String pattern) {
+		final Integer index = indexByPattern.get(pattern);
+		if(index == null){
+			throw new IllegalArgumentException("\"" + pattern + "\" is not watched by this LogWatch.");
+		}
+		return index.intValue();
+	}
+
+
+	/**
+	 * 一次匹配，记录匹配的模式、日志行和读取时间
+	 * A match of a pattern: the log line and the time it was read.
+	 */
+
+	public static class Match {
+		private final String pattern;
+		private final String line;
+		private final long time;
+
+		Match(String pattern, String line, long time) {
+			this.pattern = pattern;
+			this.line = line;
+			this.time = time;
+		}
+
+		/**
+		 * Returns the pattern that matched.
+		 *
+		 * @return the pattern
+		 */
+
+		public String getPattern() {
+			return pattern;
+		}
+
+		/**
+		 * Returns the log line that matched.
+		 *
+		 * @return the log line
+		 */
+
+		public String getLine() {
+			return line;
+		}
+
+		/**
+		 * 返回日志行被读取时的时间，与SystemClock.uptimeMillis()可比较
+		 * Returns the time the line was read, comparable to {@link SystemClock#uptimeMillis()}.
+		 *
+		 * @return the time in milliseconds
+		 */
+
+		public long getTime() {
+			return time;
+		}
+
+		@Override
+		public String toString() {
+			return time + ": " + line;
+		}
+	}
+}
@@ -0,0 +1,351 @@
+package com.robotium.solo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import android.os.SystemClock;
+import android.util.Log;
+
+
+/**
+ * 持续读取logcat输出的后台读取器，最近的日志行保存在固定大小的环形缓冲区中
+ * Streams the output of one long-lived {@code logcat} process into a bounded ring buffer
+ * of lines. Waiting for a log message only checks the lines that have been added since
+ * the previous check, and the waiting thread is woken up as soon as a line is read.
+ * Requires read logs permission (android.permission.READ_LOGS) in AndroidManifest.xml of the application under test.
+ *
+ */
+
+class LogcatReader {
+	//环形缓冲区保存的最大行数
+	private static final int CAPACITY = 8192;
+	//读取线程的名字
+	private static final String THREAD_NAME = "Robotium-logcat";
+	//清空日志后写入的标记行的tag和内容前缀
+	private static final String LOG_TAG = "Robotium";
+	private static final String CLEAR_MARKER = "Robotium log cleared ";
+	private static final String RESTART_MARKER = "Robotium log restarted ";
+	//等待读取到标记行的最长时间
+	private static final int CLEAR_MARKER_TIMEOUT = 2000;
+
+	//最近读取的日志行，第n行保存在lines[n % CAPACITY]
+	private final String[] lines = new String[CAPACITY];
+	//每一行被读取时的时间(uptime)
+	private final long[] times = new long[CAPACITY];
+	//注册的日志监视，每读取一行都交给它们匹配
+	private final ArrayList<LogWatch> watches = new ArrayList<LogWatch>();
+	//下一行的序号，也是已经读取的总行数
+	private long nextLine;
+	//clearLog()时的序号，之前的行不再参与匹配
+	private long firstLine;
+	//清空日志和重新启动的次数，使每个标记行都不相同
+	private int markerCount;
+	//重新启动后，logcat先输出已有的日志，读取到这个标记行之前的行不再交给已注册的监视
+	private String restartMarker;
+	//logcat进程和读取线程，未启动或已结束时为null
+	private Process process;
+	private Thread readerThread;
+
+
+	/**
+	 * 启动logcat进程和读取线程，已经在运行时不做任何事。启动时logcat先输出已有的日志，然后持续输出新日志
+	 * Starts the logcat process and the reader thread unless they are already running. logcat first
+	 * outputs the log that already exists and then keeps streaming new lines.
+	 *
+	 * @return {@code true} if the reader is running
+	 */
+
+	public synchronized boolean start() {
+		if(readerThread != null){
+			return true;
+		}
+		try {
+			//错误输出合并到标准输出，避免错误输出缓冲区写满阻塞logcat
+			process = new ProcessBuilder("logcat").redirectErrorStream(true).start();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		//重新启动时logcat会再次输出已有日志，丢弃之前读取的行避免重复
+		firstLine = nextLine;
+		final Process startedProcess = process;
+		readerThread = new Thread(new Runnable() {
+			public void run() {
+				read(startedProcess);
+			}
+		}, THREAD_NAME);
+		readerThread.setDaemon(true);
+		readerThread.start();
+		//已注册的监视已经匹配过之前的日志，再次输出的已有日志不交给它们，直到读取到标记行
+		restartMarker = null;
+		if(!watches.isEmpty()){
+			restartMarker = newMarker(RESTART_MARKER);
+			Log.i(LOG_TAG, restartMarker);
+		}
+		for(int i = 0; i < watches.size(); i++){
+			watches.get(i).setReaderRunning(true);
+		}
+		return true;
+	}
+
+	/**
+	 * 日志监视等待之前调用：监视仍然注册时，确保读取线程在运行，logcat已经结束时重新启动
+	 * Called by a watch before it waits. Starts the reader again if the logcat process has
+	 * ended, as long as the watch is still registered.
+	 *
+	 * @param logWatch the watch that is about to wait
+	 * @return {@code true} if the watch is registered and the reader is running
+	 */
+
+	synchronized boolean ensureRunning(LogWatch logWatch) {
+		if(!watches.contains(logWatch)){
+			return false;
+		}
+		return start();
+	}
+
+	/**
+	 * 停止logcat进程，读取线程随之结束
+	 * Stops the logcat process, which ends the reader thread.
+	 */
+
+	public synchronized void stop() {
+		if(process != null){
+			process.destroy();
+		}
+		process = null;
+		readerThread = null;
+		for(int i = 0; i < watches.size(); i++){
+			watches.get(i).setReaderRunning(false);
+		}
+		watches.clear();
+		notifyAll();
+	}
+
+	/**
+	 * 创建并注册一个日志监视，缓冲区中已有的日志先交给它匹配
+	 * Creates and registers a watch for the given patterns. The log that is buffered is
+	 * matched first, then every new line is matched as it is read.
+	 *
+	 * @param patterns the patterns to watch for, interpreted as regular expressions
+	 * @return the watch
+	 */
+
+	public LogWatch watch(String[] patterns) {
+		final LogWatch logWatch = new LogWatch(this, patterns);
+		start();
+
+		synchronized (this) {
+			for(long line = Math.max(firstLine, nextLine - CAPACITY); line < nextLine; line++){
+				final int position = (int) (line % CAPACITY);
+				logWatch.onLine(lines[position], times[position]);
+			}
+			watches.add(logWatch);
+			logWatch.setReaderRunning(readerThread != null);
+		}
+		return logWatch;
+	}
+
+	/**
+	 * 移除日志监视
+	 * Removes a watch, it no longer receives new lines.
+	 *
+	 * @param logWatch the watch to remove
+	 */
+
+	public synchronized void removeWatch(LogWatch logWatch) {
+		if(watches.remove(logWatch)){
+			//移除的监视不再收到新行，等待中的线程立即返回
+			logWatch.setReaderRunning(false);
+		}
+	}
+
+	/**
+	 * 清空logcat，之前的行不再参与匹配。清空时可能还有旧的行在管道中没有读取，
+	 * 所以清空后写入一个标记行，读取到标记行之后的行才参与匹配
+	 * Clears the log. Lines logged before the log was cleared are no longer matched. Such
+	 * lines may still be in the pipe from the logcat process when the log is cleared, so a
+	 * marker line is logged after clearing and only the lines read after the marker are
+	 * matched. If the marker is not read in time, the lines read so far are discarded.
+	 */
+
+	public void clear() {
+		final boolean running = start();
+		try {
+			Runtime.getRuntime().exec("logcat -c").waitFor();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException ignored) {}
+
+		final String marker;
+		synchronized (this) {
+			firstLine = nextLine;
+			marker = newMarker(CLEAR_MARKER);
+		}
+		if(running){
+			Log.i(LOG_TAG, marker);
+			skipPast(marker);
+		}
+	}
+
+	//返回一个不会重复的标记行
+	private synchronized String newMarker(String prefix) {
+		return prefix + (++markerCount) + " " + SystemClock.uptimeMillis();
+	}
+
+	/**
+	 * 等待读取到标记行，并丢弃它和它之前的所有行
+	 * Waits for the given marker line to be read and discards it together with every line read before it.
+	 *
+	 * @param marker the text of the marker line
+	 */
+
+	private synchronized void skipPast(String marker) {
+		final long endTime = SystemClock.uptimeMillis() + CLEAR_MARKER_TIMEOUT;
+		long line = firstLine;
+
+		while (true) {
+			for(line = Math.max(line, nextLine - CAPACITY); line < nextLine; line++){
+				if(lines[(int) (line % CAPACITY)].contains(marker)){
+					firstLine = line + 1;
+					return;
+				}
+			}
+			final long remaining = endTime - SystemClock.uptimeMillis();
+			//超时，或者logcat已经结束，丢弃已经读取的行
+			if(remaining <= 0 || readerThread == null){
+				firstLine = Math.max(firstLine, nextLine);
+				return;
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				firstLine = Math.max(firstLine, nextLine);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 等待包含指定内容的日志行出现，已有的日志也参与匹配，之后只检查新读取的行
+	 * Waits for a log line containing the given message. The log that is buffered is matched
+	 * first, after that only new lines are checked as they are read.
+	 *
+	 * @param logMessage the log message to wait for
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @return {@code true} if the log message appears and {@code false} if it does not appear before the timeout
+	 */
+
+	public boolean waitForMessage(String logMessage, int timeout) {
+		final long endTime = SystemClock.uptimeMillis() + timeout;
+
+		if(!start()){
+			return false;
+		}
+		synchronized (this) {
+			//缓冲区中最早的仍然保存的行
+			long line = Math.max(firstLine, nextLine - CAPACITY);
+
+			while (true) {
+				for(; line < nextLine; line++){
+					if(lines[(int) (line % CAPACITY)].contains(logMessage)){
+						return true;
+					}
+				}
+				final long remaining = endTime - SystemClock.uptimeMillis();
+				//超时，或者logcat已经结束
+				if(remaining <= 0 || readerThread == null){
+					return false;
+				}
+				try {
+					wait(remaining);
+				} catch (InterruptedException e) {
+					return false;
+				}
+				//等待期间清空了日志，或者读取太慢被覆盖的行不再检查
+				line = Math.max(line, Math.max(firstLine, nextLine - CAPACITY));
+			}
+		}
+	}
+
+	/**
+	 * 在读取线程中读取logcat输出，直到进程结束
+	 * Reads the output of the logcat process until it ends. Runs on the reader thread.
+	 *
+	 * @param logcatProcess the logcat process to read from
+	 */
+
+	private void read(Process logcatProcess) {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(logcatProcess.getInputStream()));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				add(line, logcatProcess);
+			}
+		} catch (IOException ignored) {
+			//stop()销毁进程时读取会被中断
+		} finally {
+			if(reader != null){
+				try {
+					reader.close();
+				} catch (IOException ignored) {}
+			}
+			ended(logcatProcess);
+		}
+	}
+
+	/**
+	 * 添加一行日志并唤醒等待的线程
+	 * Adds a line to the ring buffer and wakes up the waiting threads.
+	 *
+	 * @param line the line to add
+	 * @param logcatProcess the process the line was read from
+	 */
+
+	private synchronized void add(String line, Process logcatProcess) {
+		//已经停止或者重新启动的进程输出的行丢弃
+		if(process != logcatProcess){
+			return;
+		}
+		final int position = (int) (nextLine % CAPACITY);
+		lines[position] = line;
+		times[position] = SystemClock.uptimeMillis();
+		nextLine++;
+		//重新启动后再次输出的已有日志，监视已经匹配过
+		if(restartMarker != null){
+			if(line.contains(restartMarker)){
+				restartMarker = null;
+			}
+		}
+		else{
+			//所有监视的模式在各自的自动机中一次匹配
+			for(int i = 0; i < watches.size(); i++){
+				watches.get(i).onLine(line, times[position]);
+			}
+		}
+		notifyAll();
+	}
+
+	/**
+	 * logcat进程结束(例如没有读取日志的权限)，下一次等待时重新启动
+	 * Called when the logcat process has ended, e.g. because the permission to read the log
+	 * is missing. The process is started again by the next wait.
+	 *
+	 * @param logcatProcess the process that has ended
+	 */
+
+	private synchronized void ended(Process logcatProcess) {
+		if(process == logcatProcess){
+			process.destroy();
+			process = null;
+			readerThread = null;
+			//等待中的监视立即返回，下一次等待时重新启动
+			for(int i = 0; i < watches.size(); i++){
+				watches.get(i).setReaderRunning(false);
+			}
+		}
+		notifyAll();
+	}
+}
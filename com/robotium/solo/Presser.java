@@ -84,7 +84,7 @@ class Presser{
 		for(int i = 1; i <=3; i++)
 			row[i] = itemsPerRow*i;
 
-		sleeper.sleep();
+		sleeper.sleepUntilIdle();
 		try{
 			//点击menu菜单
 			inst.sendKeyDownUpSync(KeyEvent.KEYCODE_MENU);
@@ -99,7 +99,7 @@ class Presser{
 		//如果index在第一行，则在第一行向右移动，知道找到指定的item
 		if (index < row[1]) {
 			for (int i = 0; i <index; i++) {
-				sleeper.sleepMini();
+				sleeper.sleepMiniUntilIdle();
 				//向右移动
 				inst.sendKeyDownUpSync(KeyEvent.KEYCODE_DPAD_RIGHT);
 			}
@@ -108,7 +108,7 @@ class Presser{
 			inst.sendKeyDownUpSync(KeyEvent.KEYCODE_DPAD_DOWN);	
 
 			for (int i = row[1]; i < index; i++) {
-				sleeper.sleepMini();
+				sleeper.sleepMiniUntilIdle();
 				inst.sendKeyDownUpSync(KeyEvent.KEYCODE_DPAD_RIGHT);
 			}
 		//如果index在第三行，或者之后的行，则先向下移动2步到第三行，然后在第三行向右移动查找指定index的item
@@ -117,7 +117,7 @@ class Presser{
 			inst.sendKeyDownUpSync(KeyEvent.KEYCODE_DPAD_DOWN);	
 
 			for (int i = row[2]; i < index; i++) {
-				sleeper.sleepMini();
+				sleeper.sleepMiniUntilIdle();
 				inst.sendKeyDownUpSync(KeyEvent.KEYCODE_DPAD_RIGHT);
 			}
 		}
@@ -189,7 +189,7 @@ class Presser{
 		//移动到itemIndex所在位置
 		for(int i = 0; i < itemIndex; i++)
 		{
-			sleeper.sleepMini();
+			sleeper.sleepMiniUntilIdle();
 			//向下移动
 			if(countingUp){
 				try{
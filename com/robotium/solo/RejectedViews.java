@@ -0,0 +1,193 @@
+package com.robotium.solo;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import android.text.Editable;
+import android.view.View;
+import android.view.ViewParent;
+import android.widget.AdapterView;
+import android.widget.TextView;
+
+
+/**
+ * 一次滚动查找中已经检查过且不匹配的view。列表中的view会被复用来显示其他行，所以除了view本身还记录它在适配器中的位置，
+ * 以及检查时的文本、错误提示和hint。位置和文本都没有变化的view不需要再次匹配
+ * The views of one scroll search that have been checked and did not match. Lists recycle
+ * their row views to show other rows, so besides the view itself the position of its row
+ * in the adapter is remembered, together with the text, the error and the hint the view had
+ * when it was checked. A view whose row and text are unchanged cannot match after scrolling
+ * either, so only the rows that have come into view need to be matched. The positions are
+ * computed once per pass over a screen: every view on the way from a text view up to its list
+ * remembers the position, so the other views of the same row stop at the first known parent
+ * and the list is asked once per row.
+ *
+ */
+
+class RejectedViews {
+	//不在列表中的view的位置
+	private static final int NO_POSITION = AdapterView.INVALID_POSITION;
+	//RecyclerView的类名
+	private static final String RECYCLER_VIEW = "widget.RecyclerView";
+	//每个不匹配的view在检查时的状态
+	private final Map<View, Stamp> stampByView = new IdentityHashMap<View, Stamp>();
+	//每种RecyclerView获取子view位置的方法，null表示没有这个方法
+	private final Map<Class<?>, Method> positionMethods = new HashMap<Class<?>, Method>();
+	//本轮检查中已经计算过的view所在行的位置，每次滚动后清空
+	private final Map<View, Integer> positionByView = new IdentityHashMap<View, Integer>();
+	//计算位置时经过的view，复用同一个列表
+	private final ArrayList<View> path = new ArrayList<View>();
+
+
+	/**
+	 * 开始检查新的一屏，之前计算的行位置不再有效
+	 * Starts a pass over a new screen. The positions computed during the previous pass are
+	 * dropped, as scrolling moves the rows.
+	 */
+
+	public void beginPass() {
+		positionByView.clear();
+	}
+
+
+	/**
+	 * 检查view是否在之前的检查中不匹配，并且之后位置和文本都没有变化
+	 * Checks if the given view did not match when it was checked before, and still shows the
+	 * same row with the same text.
+	 *
+	 * @param view the view to check
+	 * @return true if the view is known not to match
+	 */
+
+	public boolean contains(TextView view) {
+		final Stamp stamp = stampByView.get(view);
+		return stamp != null && stamp.isCurrent(view, getAdapterPosition(view));
+	}
+
+	/**
+	 * 记录一个不匹配的view。可编辑的文本内容会原地改变，这样的view不记录
+	 * Remembers a view that did not match. Views with editable text are not remembered, as
+	 * that text is changed in place.
+	 *
+	 * @param view the view that did not match
+	 */
+
+	public void add(TextView view) {
+		if(view.getText() instanceof Editable){
+			return;
+		}
+		stampByView.put(view, new Stamp(view, getAdapterPosition(view)));
+	}
+
+	/**
+	 * 返回view所在的行在适配器中的位置。向上查找到列表或者本轮已经计算过的view为止，经过的view都记录这个位置
+	 * Returns the position in the adapter of the row that contains the given view. The walk up
+	 * the parents stops at the list or at the first view whose position is already known in
+	 * this pass, and every view on the way remembers the position.
+	 *
+	 * @param view the view
+	 * @return the position of the row, or {@code AdapterView.INVALID_POSITION} if the view is not in a list
+	 */
+
+	private int getAdapterPosition(View view) {
+		View child = view;
+		ViewParent parent = view.getParent();
+		int position = NO_POSITION;
+
+		path.clear();
+		while(true){
+			final Integer knownPosition = positionByView.get(child);
+			if(knownPosition != null){
+				position = knownPosition.intValue();
+				break;
+			}
+			path.add(child);
+			if(!(parent instanceof View)){
+				break;
+			}
+			if(parent instanceof AdapterView<?>){
+				position = ((AdapterView<?>) parent).getPositionForView(child);
+				break;
+			}
+			final Method positionMethod = getPositionMethod(parent.getClass());
+			if(positionMethod != null){
+				try{
+					position = ((Integer) positionMethod.invoke(parent, child)).intValue();
+				}catch(Exception ignored){}
+				break;
+			}
+			child = (View) parent;
+			parent = parent.getParent();
+		}
+		final Integer positionOfPath = Integer.valueOf(position);
+		for(int i = 0; i < path.size(); i++){
+			positionByView.put(path.get(i), positionOfPath);
+		}
+		return position;
+	}
+
+	/**
+	 * 返回RecyclerView获取子view位置的方法，每个类只查找一次
+	 * Returns the method a RecyclerView uses to return the adapter position of a child. The
+	 * method is looked up once per class.
+	 *
+	 * @param viewClass the class of a parent view
+	 * @return the method, or {@code null} if the class is not a RecyclerView
+	 */
+
+	private Method getPositionMethod(Class<?> viewClass) {
+		if(positionMethods.containsKey(viewClass)){
+			return positionMethods.get(viewClass);
+		}
+		Method positionMethod = null;
+		if(isRecyclerView(viewClass)){
+			try{
+				positionMethod = viewClass.getMethod("getChildAdapterPosition", View.class);
+			}catch(NoSuchMethodException e){
+				//旧版本的RecyclerView
+				try{
+					positionMethod = viewClass.getMethod("getChildPosition", View.class);
+				}catch(NoSuchMethodException ignored){}
+			}
+		}
+		positionMethods.put(viewClass, positionMethod);
+		return positionMethod;
+	}
+
+	//判断是否是RecyclerView或者它的子类
+	private static boolean isRecyclerView(Class<?> viewClass) {
+		for(Class<?> c = viewClass; c != null && c != Object.class; c = c.getSuperclass()){
+			if(c.getName().endsWith(RECYCLER_VIEW)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * 检查时view的位置和文本。TextView设置文本时会替换CharSequence对象，所以按引用比较
+	 * The row and the text of a view when it was checked. Setting the text of a
+	 * {@code TextView} replaces the {@code CharSequence}, so references are compared.
+	 */
+
+	private static class Stamp {
+		private final int position;
+		private final CharSequence text;
+		private final CharSequence error;
+		private final CharSequence hint;
+
+		Stamp(TextView view, int position) {
+			this.position = position;
+			this.text = view.getText();
+			this.error = view.getError();
+			this.hint = view.getHint();
+		}
+
+		boolean isCurrent(TextView view, int currentPosition) {
+			return position == currentPosition && text == view.getText() && error == view.getError() && hint == view.getHint();
+		}
+	}
+}
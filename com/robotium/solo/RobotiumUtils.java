@@ -4,9 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 import android.view.View;
 import android.widget.TextView;
 
@@ -117,35 +115,27 @@ public class RobotiumUtils {
 	 */
 
 	public static int getNumberOfMatches(String regex, TextView view, Set<TextView> uniqueTextViews){
+		return getNumberOfMatches(TextMatcher.compile(regex), view, uniqueTextViews);
+	}
+
+	/**
+	 * 使用编译好的匹配器检查View是否匹配，返回匹配的总数
+	 * Checks if a View matches an already compiled text matcher and returns the amount of total matches.
+	 * 
+	 * @param textMatcher the compiled matcher, reused for every view and poll of a search
+	 * @param view the view to check
+	 * @param uniqueTextViews set of views that have matched
+	 * @return number of total matches
+	 */
+
+	static int getNumberOfMatches(TextMatcher textMatcher, TextView view, Set<TextView> uniqueTextViews){
 		if(view == null) {
 			return uniqueTextViews.size();
 		}
 		
-		Pattern pattern = null;
-		try{
-			pattern = Pattern.compile(regex);
-		}catch(PatternSyntaxException e){
-			pattern = Pattern.compile(regex, Pattern.LITERAL);
-		}
-		
-		Matcher matcher = pattern.matcher(view.getText().toString());
-		
-		if (matcher.find()){
+		if (textMatcher.matches(view)){
 			uniqueTextViews.add(view);
 		}
-		
-		if (view.getError() != null){
-			matcher = pattern.matcher(view.getError().toString());
-			if (matcher.find()){
-				uniqueTextViews.add(view);
-			}
-		}	
-		if (view.getText().toString().equals("") && view.getHint() != null){
-			matcher = pattern.matcher(view.getHint().toString());
-			if (matcher.find()){
-				uniqueTextViews.add(view);
-			}
-		}	
 		return uniqueTextViews.size();		
 	}
 
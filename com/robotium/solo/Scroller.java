@@ -203,6 +203,21 @@ class Scroller {
 		return scroll(Scroller.DOWN);
 	}
 
+	/**
+	 * 在截止时间之前向下滚动，截止时间已过则不再滚动
+	 * Scrolls down, unless the given deadline has expired.
+	 *
+	 * @param deadline the deadline of the operation that scrolls
+	 * @return {@code true} if more scrolling can be done and {@code false} if not or if the deadline has expired
+	 */
+
+	public boolean scrollDown(Deadline deadline) {
+		if(deadline.isExpired()) {
+			return false;
+		}
+		return scrollDown();
+	}
+
 	/**
 	 * 拖动当前页面最新的view控件，看是否可拖动
 	 * direction  0拖动到顶部,1拖动到底部
@@ -214,14 +229,10 @@ class Scroller {
 	 * @return {@code true} if more scrolling can be done
 	 */
 
-	@SuppressWarnings("unchecked")
 	public boolean scroll(int direction, boolean allTheWay) {
-		//获取当前activity的所有可见view
-		ArrayList<View> viewList = RobotiumUtils.
-				removeInvisibleViews(viewFetcher.getAllViews(true));
-		//在viewList中过滤出指定类型的view，并返回
-		ArrayList<View> views = RobotiumUtils.filterViewsToSet(new Class[] { ListView.class,
-				ScrollView.class, GridView.class, WebView.class}, viewList);
+		//通过类型索引一次获取当前activity中指定类型的可见view
+		ArrayList<View> views = viewFetcher.removeInvisibleViews(viewFetcher.getCurrentViews(new Class<?>[] { ListView.class,
+				ScrollView.class, GridView.class, WebView.class}, true));
 		//从views中获取当前最新的view
 		View view = viewFetcher.getFreshestView(views);
 		//如果找不到可滑动的view，则返回false
@@ -359,7 +370,8 @@ class Scroller {
 			
 			scrollListToLine(absListView, lineToScrollTo);
 		}
-		sleeper.sleep();
+		//等待滚动完成后界面空闲，最多500ms
+		sleeper.sleepUntilIdle();
 		return true;
 	}
 
@@ -6,7 +6,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.TextView;
@@ -36,10 +35,14 @@ class Searcher {
 	Set<TextView> uniqueTextViews;
 	//list容器，有序元素可重复
 	List<WebElement> webElements;
+	//webElements中元素的text和xy坐标，用于去重
+	private final Set<WebElementKey> webElementKeys;
 	//统计非重复view数量
 	private int numberOfUniqueViews;
 	//默认超时5s
 	private final int TIMEOUT = 5000;
+	//最近一次查找编译的文本匹配器，同一模式的后续轮询直接复用
+	private TextMatcher textMatcher;
 
 
 	/**
@@ -57,6 +60,7 @@ class Searcher {
 		this.scroller = scroller;
 		this.sleeper = sleeper;
 		webElements = new ArrayList<WebElement>();
+		webElementKeys = new HashSet<WebElementKey>();
 		uniqueTextViews = new HashSet<TextView>();
 	}
 
@@ -83,20 +87,48 @@ class Searcher {
 	 */
 
 	public boolean searchWithTimeoutFor(Class<? extends TextView> viewClass, String regex, int expectedMinimumNumberOfMatches, boolean scroll, boolean onlyVisible) {
-		//计算出最终时间
-		final long endTime = SystemClock.uptimeMillis() + TIMEOUT;
+		return searchWithTimeoutFor(viewClass, regex, expectedMinimumNumberOfMatches, Deadline.after(TIMEOUT), scroll, onlyVisible);
+	}
+
+	/**
+	 * 在截止时间之前查找，嵌套的查找和滚动使用同一个截止时间
+	 * Searches for a {@code View} with the given regex string before the given deadline. The
+	 * nested search and scrolling consume the same deadline.
+	 *
+	 * @param viewClass what kind of {@code View} to search for, e.g. {@code Button.class} or {@code TextView.class}
+	 * @param regex the text to search for. The parameter <strong>will</strong> be interpreted as a regular expression.
+	 * @param expectedMinimumNumberOfMatches the minimum number of matches expected to be found. {@code 0} matches means that one or more
+	 * matches are expected to be found
+	 * @param deadline the deadline of the search
+	 * @param scroll whether scrolling should be performed
+	 * @param onlyVisible {@code true} if only texts visible on the screen should be searched
+	 * 
+	 * @return {@code true} if a {@code View} of the specified class with the given text is found a given number of
+	 * times, and {@code false} if it is not found
+	 */
+
+	public boolean searchWithTimeoutFor(Class<? extends TextView> viewClass, String regex, int expectedMinimumNumberOfMatches, Deadline deadline, boolean scroll, boolean onlyVisible) {
+		//两次查找之间只休息一次，由轮询决定休息多久
+		final Sleeper.Poll poll = sleeper.startPoll("searchWithTimeoutFor");
 		//任意匹配的view
 		TextView foundAnyMatchingView = null;
 		//在规定时间内
-		while (SystemClock.uptimeMillis() < endTime) {
-			sleeper.sleep();
-			//根据给定的regex在规定时间内找到指定类型的view，并返回
-			foundAnyMatchingView = searchFor(viewClass, regex, expectedMinimumNumberOfMatches, 0, scroll, onlyVisible);
+		while (!deadline.isExpired()) {
+			final int changeCount = sleeper.getChangeCount();
+			//根据给定的regex在剩余时间内找到指定类型的view，并返回
+			foundAnyMatchingView = searchFor(viewClass, regex, expectedMinimumNumberOfMatches, deadline, scroll, onlyVisible);
 			//找到则返回true
 			if (foundAnyMatchingView !=null){
+				poll.done();
 				return true;
 			}
+			if(deadline.isExpired()){
+				break;
+			}
+			//界面变化时立即重新查找
+			poll.sleepUntilChange(changeCount, deadline.getEndTime());
 		}
+		Log.d(LOG_TAG, poll + " searching for '" + regex + "'");
 		return false;
 	}
 
@@ -125,20 +157,47 @@ class Searcher {
 	 */
 
 	public <T extends TextView> T searchFor(final Class<T> viewClass, final String regex, int expectedMinimumNumberOfMatches, final long timeout, final boolean scroll, final boolean onlyVisible) {
+		return searchFor(viewClass, regex, expectedMinimumNumberOfMatches, timeout > 0 ? Deadline.after(timeout) : Deadline.NONE, scroll, onlyVisible);
+	}
+
+	/**
+	 * 在截止时间之前按照给定的条件查找TextView类型的View，滚动也在截止时间到期时停止
+	 * Searches for a {@code View} with the given regex string before the given deadline.
+	 * Scrolling stops when the deadline expires.
+	 *
+	 * @param viewClass what kind of {@code View} to search for, e.g. {@code Button.class} or {@code TextView.class}
+	 * @param regex the text to search for. The parameter <strong>will</strong> be interpreted as a regular expression.
+	 * @param expectedMinimumNumberOfMatches the minimum number of matches expected to be found. {@code 0} matches means that one or more
+	 * matches are expected to be found.
+	 * @param deadline the deadline of the search, {@link Deadline#NONE} to search until scrolling ends
+	 * @param scroll whether scrolling should be performed
+	 * @param onlyVisible {@code true} if only texts visible on the screen should be searched
+	 * 
+	 * @return the view of the specified class with the given text if it is found a given number of times,
+	 * {@code null} if it is not found
+	 */
+
+	public <T extends TextView> T searchFor(final Class<T> viewClass, final String regex, int expectedMinimumNumberOfMatches, final Deadline deadline, final boolean scroll, final boolean onlyVisible) {
 		// 如果设置的期望配匹次数小于1次，则默认配置为1次
 		if(expectedMinimumNumberOfMatches < 1) {
 			expectedMinimumNumberOfMatches = 1;
 		}
+		//模式只编译一次，文本索引用它筛选候选view
+		final TextMatcher textMatcher = getTextMatcher(regex);
 		// 构造可在子线程中调用的集合类
 		final Callable<Collection<T>> viewFetcherCallback = new Callable<Collection<T>>() {
+			//第一次查找之后的调用都发生在滚动之后
+			private boolean scrolled = false;
+
 			@SuppressWarnings("unchecked")
 			public Collection<T> call() throws Exception {
-				sleeper.sleep();
-				// 获取当前屏幕的所有views,类型为viewClass所指定的
-				ArrayList<T> viewsToReturn = viewFetcher.getCurrentViews(viewClass, true);
+				//不在这里休息，两次查找之间的休息由调用者的轮询完成，滚动后由Scroller等待界面空闲
+				// 第一次用文本索引筛选可能匹配的views；滚动后不再为整个界面建立索引，已经检查过的行由RejectedViews跳过，只匹配新出现的行
+				ArrayList<T> viewsToReturn = scrolled ? viewFetcher.getCurrentViews(viewClass, true) : viewFetcher.getCurrentViews(viewClass, textMatcher);
+				scrolled = true;
 				// 如果配置了只查找可见view中的内容，那么过滤掉所有非可见的
 				if(onlyVisible){
-					viewsToReturn = RobotiumUtils.removeInvisibleViews(viewsToReturn);
+					viewsToReturn = viewFetcher.removeInvisibleViews(viewsToReturn);
 				}
 				// 检查是否是TextView类型的,如果是查找TextView类型的，且当前屏幕内容包含WebView.那么也把WebView中的相关TextView类元素全部加入返回列表
 				if(viewClass.isAssignableFrom(TextView.class)) {
@@ -151,7 +210,7 @@ class Searcher {
 		
 		try {
 			//按照给定的条件查找TextView类型的View
-			return searchFor(viewFetcherCallback, regex, expectedMinimumNumberOfMatches, timeout, scroll);
+			return searchFor(viewFetcherCallback, regex, expectedMinimumNumberOfMatches, deadline, scroll);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -169,7 +228,7 @@ class Searcher {
 
 	public <T extends View> boolean searchFor(Set<T> uniqueViews, Class<T> viewClass, final int index) {
 		//获取当前可见的所有view
-		ArrayList<T> allViews = RobotiumUtils.removeInvisibleViews(viewFetcher.getCurrentViews(viewClass, true));
+		ArrayList<T> allViews = viewFetcher.removeInvisibleViews(viewFetcher.getCurrentViews(viewClass, true));
 		//获取所有view中，非重复view的数量
 		int uniqueViewsFound = (getNumberOfUniqueViews(uniqueViews, allViews));
 		//非重复view的数量值大于index，返回true
@@ -192,14 +251,13 @@ class Searcher {
 	 * @return true if view is found
 	 */
 
-	public <T extends View> boolean searchFor(View view) {
-		ArrayList<View> views = viewFetcher.getAllViews(true);
-		for(View v : views){
-			if(v.equals(view)){
-				return true;
+	public <T extends View> boolean searchFor(final View view) {
+		//找到后立即停止遍历，不生成完整的view列表
+		return viewFetcher.getView(new ViewFetcher.ViewFilter() {
+			public boolean matches(View v) {
+				return v.equals(view);
 			}
-		}
-		return false;
+		}, 0, true) != null;
 	}
 
 	/**
@@ -228,12 +286,38 @@ class Searcher {
 	 */
 
 	public <T extends TextView> T searchFor(Callable<Collection<T>> viewFetcherCallback, String regex, int expectedMinimumNumberOfMatches, long timeout, boolean scroll) throws Exception {
-		final long endTime = SystemClock.uptimeMillis() + timeout;	
+		return searchFor(viewFetcherCallback, regex, expectedMinimumNumberOfMatches, timeout > 0 ? Deadline.after(timeout) : Deadline.NONE, scroll);
+	}
+
+	/**
+	 * 在截止时间之前按照给定的条件查找，截止时间到期后不再滚动。滚动后只匹配新出现的行，不匹配的行不再重复检查
+	 * Searches for a {@code View} with the given regex string before the given deadline. No more
+	 * scrolling is done once the deadline has expired. After scrolling only the rows that have
+	 * come into view are matched, rows that did not match before are not checked again.
+	 *
+	 * @param viewFetcherCallback callback which should return an updated collection of views to search
+	 * @param regex the text to search for. The parameter <strong>will</strong> be interpreted as a regular expression.
+	 * @param expectedMinimumNumberOfMatches the minimum number of matches expected to be found. {@code 0} matches means that one or more
+	 * matches are expected to be found.
+	 * @param deadline the deadline of the search, {@link Deadline#NONE} to search until scrolling ends
+	 * @param scroll whether scrolling should be performed
+	 * 
+	 * @return the view of the specified class with the given text if it is found a given number of times,
+	 * {@code null} if it is not found
+	 *
+	 * @throws Exception not really, it's just the signature of {@code Callable}
+	 */
+
+	public <T extends TextView> T searchFor(Callable<Collection<T>> viewFetcherCallback, String regex, int expectedMinimumNumberOfMatches, Deadline deadline, boolean scroll) throws Exception {
+		//模式只编译一次，用于本次查找的所有view和所有轮询
+		final TextMatcher textMatcher = getTextMatcher(regex);
+		//本次查找中不匹配的view，滚动后只匹配新出现的行
+		final RejectedViews rejectedViews = new RejectedViews();
 		Collection<T> views;
 
 		while (true) {
 			//超时
-			final boolean timedOut = timeout > 0 && SystemClock.uptimeMillis() > endTime;
+			final boolean timedOut = deadline.isExpired();
 			//如果超时，记录非重复view数量和web元素，并退出
 			if(timedOut){
 				logMatchesFound(regex);
@@ -241,15 +325,28 @@ class Searcher {
 			}
 			//获取给定条件后的所有view
 			views = viewFetcherCallback.call();
+			//滚动后行的位置改变，重新计算
+			rejectedViews.beginPass();
 			//检查是否找到了期望的数量，如果找到了期望数量的元素，那么清空缓存，返回找到的对应View
 			for(T view : views){
-				if (RobotiumUtils.getNumberOfMatches(regex, view, uniqueTextViews) == expectedMinimumNumberOfMatches) {
+				//之前检查过、行和文本都没有变化的view不再匹配
+				if(view == null || rejectedViews.contains(view)){
+					continue;
+				}
+				//主线程快照模式下用采集的文本匹配
+				if(viewFetcher.matches(textMatcher, view)){
+					uniqueTextViews.add(view);
+				}
+				if (uniqueTextViews.size() == expectedMinimumNumberOfMatches) {
 					uniqueTextViews.clear();
 					return view;
 				}
+				if(!uniqueTextViews.contains(view)){
+					rejectedViews.add(view);
+				}
 			}
 			//如果没找到，配置了可拖动，但是当前不允许拖动，那么记录异常日志，返回null,由Config中配置是否可拖动，默认为true
-			if(scroll && !scroller.scrollDown()){
+			if(scroll && !scroller.scrollDown(deadline)){
 				logMatchesFound(regex);
 				return null; 
 			}
@@ -261,6 +358,22 @@ class Searcher {
 		}
 	}
 
+	/**
+	 * 返回给定模式的文本匹配器，与上一次查找的模式相同时复用上一次编译的结果
+	 * Returns the text matcher of the given pattern. The matcher of the previous search is
+	 * reused if it was compiled from the same pattern, as is the case for every poll of a wait.
+	 *
+	 * @param regex the pattern, interpreted as a regular expression
+	 * @return the compiled text matcher
+	 */
+
+	private synchronized TextMatcher getTextMatcher(String regex) {
+		if(textMatcher == null || !textMatcher.getRegex().equals(regex)){
+			textMatcher = TextMatcher.compile(regex);
+		}
+		return textMatcher;
+	}
+
 	/**
 	 * 查找指定id的web元素
 	 * Searches for a web element.
@@ -284,35 +397,22 @@ class Searcher {
 	}
 
 	/**
-	 * 列表合并,webElementsOnScreen加入到allWebElements中，元素不重复
-	 * Adds views to a given list.
+	 * 列表合并,webElementsOnScreen加入到allWebElements中，元素不重复。已有元素的text和xy坐标保存在webElementKeys中，每个元素只查找一次
+	 * Adds views to a given list. The text and location of the elements already in the list are
+	 * kept in a hash set, so each element on screen is checked for a duplicate in constant time.
 	 * 
 	 * @param allWebElements the list of all views
 	 * @param webTextViewsOnScreen the list of views shown on screen
 	 */
 
 	private void addViewsToList(List<WebElement> allWebElements, List<WebElement> webElementsOnScreen){
-		int[] xyViewFromSet = new int[2];
-		int[] xyViewFromScreen = new int[2];
 		//循环过滤出每一个重复的view，然后把不重复的web元素放入allWebElements
 		for(WebElement textFromScreen : webElementsOnScreen){
-			boolean foundView = false;
-			//获取webElement的xy坐标
-			textFromScreen.getLocationOnScreen(xyViewFromScreen);
-			for(WebElement textFromList : allWebElements){
-				//获取列表中每个元素的xy坐标
-				textFromList.getLocationOnScreen(xyViewFromSet);
-				//判断每个webElementsOnScreen中的web元素，是否与allWebElements中的重复
-				if(textFromScreen.getText().equals(textFromList.getText()) && xyViewFromScreen[0] == xyViewFromSet[0] && xyViewFromScreen[1] == xyViewFromSet[1]) {
-					foundView = true;
-				}
-			}
-
-			if(!foundView){
+			//text，xy坐标一致的元素已经在allWebElements中
+			if(webElementKeys.add(new WebElementKey(textFromScreen))){
 				allWebElements.add(textFromScreen);
 			}
 		}
-
 	}
 
 	/**
@@ -335,8 +435,10 @@ class Searcher {
 				webElementToReturn = webElements.get(--match);
 			}catch(Exception ignored){}
 		}
-		if(webElementToReturn != null)
+		if(webElementToReturn != null){
 			webElements.clear();
+			webElementKeys.clear();
+		}
 
 		return webElementToReturn;
 	}
@@ -386,5 +488,40 @@ class Searcher {
 		}
 		uniqueTextViews.clear();
 		webElements.clear();
+		webElementKeys.clear();
+	}
+
+
+	/**
+	 * web元素去重的键，由text和xy坐标组成
+	 * The key used to find duplicate web elements, made of the text and the location on screen.
+	 */
+
+	private static class WebElementKey {
+		private final String text;
+		private final int x;
+		private final int y;
+
+		WebElementKey(WebElement webElement) {
+			final int[] xy = new int[2];
+			webElement.getLocationOnScreen(xy);
+			this.text = webElement.getText();
+			this.x = xy[0];
+			this.y = xy[1];
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if(!(object instanceof WebElementKey)){
+				return false;
+			}
+			final WebElementKey key = (WebElementKey) object;
+			return x == key.x && y == key.y && (text == null ? key.text == null : text.equals(key.text));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * x + y) + (text == null ? 0 : text.hashCode());
+		}
 	}
 }
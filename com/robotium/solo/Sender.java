@@ -40,8 +40,8 @@ class Sender {
 	 */
 
 	public void sendKeyCode(int keycode)
-	{	// 等待500ms
-		sleeper.sleep();
+	{	// 等待界面空闲，最多500ms
+		sleeper.sleepUntilIdle();
 		try{
 			//发送各类按键事件
 			inst.sendCharacterSync(keycode);
@@ -58,11 +58,11 @@ class Sender {
 	 */
 
 	public void goBack() {
-		sleeper.sleep();
+		sleeper.sleepUntilIdle();
 		try {
-			//发送返回事件
+			//发送返回事件，等待界面空闲，最多500ms
 			inst.sendKeyDownUpSync(KeyEvent.KEYCODE_BACK);
-			sleeper.sleep();
+			sleeper.sleepUntilIdle();
 		} catch (Throwable ignored) {}
 	}
 }
@@ -1,10 +1,28 @@
 package com.robotium.solo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import android.os.SystemClock;
+
 //休息工具类
 class Sleeper {
 	//间隔500ms
 	private final int PAUSE = 500;
 	//最小间隔300ms
 	private final int MINIPAUSE = 300;
+	//等待界面变化时最少休息的时间
+	private final int MIN_CHANGE_PAUSE = 20;
+	//界面变化的次数
+	private int changeCount;
+	//主线程空闲检测
+	private final UiIdleDetector uiIdleDetector = new UiIdleDetector();
+	//没有历史数据时，第一次轮询的间隔
+	private final int INITIAL_POLL = 50;
+	//每种操作保留的历史耗时的数量
+	private final int SETTLE_TIME_SAMPLES = 32;
+	//按操作记录的达到条件所需的时间
+	private final Map<String, SettleTimes> settleTimesByOperation = new HashMap<String, SettleTimes>();
 
 	/**
 	 * 当前线程默认休息500ms
@@ -39,4 +57,290 @@ class Sleeper {
 		} catch (InterruptedException ignored) {}
 	}
 
+	/**
+	 * 通知等待中的线程界面发生了变化，例如窗口layout或draw、新的activity
+	 * Signals that the UI has changed, e.g. a window has been laid out or drawn or a new
+	 * Activity has been started. Wakes up threads in {@link #sleepUntilChange(int)}.
+	 */
+
+	public synchronized void signalChange() {
+		changeCount++;
+		notifyAll();
+	}
+
+	/**
+	 * 返回界面变化的次数，在检查条件之前读取，然后传给sleepUntilChange
+	 * Returns the number of changes signalled so far. Should be read before a condition is
+	 * checked and then handed to {@link #sleepUntilChange(int)}, so that no change is missed.
+	 *
+	 * @return the number of changes signalled so far
+	 */
+
+	public synchronized int getChangeCount() {
+		return changeCount;
+	}
+
+	/**
+	 * 休息直到界面发生变化，最多休息500ms
+	 * Sleeps until the UI has changed since the given change count, but no longer than the
+	 * default pause length.
+	 *
+	 * @param sinceChangeCount the change count read before the condition was checked
+	 */
+
+	public void sleepUntilChange(int sinceChangeCount) {
+		sleepUntilChange(sinceChangeCount, PAUSE);
+	}
+
+	/**
+	 * 休息直到界面发生变化，最多休息300ms
+	 * Sleeps until the UI has changed since the given change count, but no longer than the
+	 * default mini pause length.
+	 *
+	 * @param sinceChangeCount the change count read before the condition was checked
+	 */
+
+	public void sleepMiniUntilChange(int sinceChangeCount) {
+		sleepUntilChange(sinceChangeCount, MINIPAUSE);
+	}
+
+	/**
+	 * 休息直到界面发生变化或者超过指定时间。至少休息MIN_CHANGE_PAUSE，避免动画时每一帧都重新检查
+	 * Sleeps until the UI has changed since the given change count or until <code>time</code>
+	 * milliseconds have passed. Sleeps at least {@code MIN_CHANGE_PAUSE} milliseconds, so that
+	 * a running animation does not cause a check on every frame.
+	 *
+	 * @param sinceChangeCount the change count read before the condition was checked
+	 * @param time the maximum length of the sleep in milliseconds
+	 */
+
+	public void sleepUntilChange(int sinceChangeCount, int time) {
+		final long endTime = SystemClock.uptimeMillis() + time;
+		sleep(Math.min(MIN_CHANGE_PAUSE, time));
+
+		synchronized (this) {
+			long remaining = endTime - SystemClock.uptimeMillis();
+			while(changeCount == sinceChangeCount && remaining > 0){
+				try {
+					wait(remaining);
+				} catch (InterruptedException ignored) {
+					return;
+				}
+				remaining = endTime - SystemClock.uptimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * 等待界面空闲：主线程消息队列已处理完，且期间没有新的layout或draw，用于替代操作后固定的休息时间
+	 * Waits for the UI to become idle, i.e. for the message queue of the main thread to drain
+	 * without any window being laid out or drawn in the meantime. A running animation keeps
+	 * drawing frames, so the UI is not considered idle until it has finished.
+	 *
+	 * @param timeout the maximum amount of time in milliseconds to wait
+	 * @return {@code true} if the UI became idle and {@code false} if the timeout expired first
+	 */
+
+	public boolean waitForUiIdle(int timeout) {
+		final long endTime = SystemClock.uptimeMillis() + timeout;
+
+		while(true){
+			final int changeCountBeforeIdle = getChangeCount();
+			final long remaining = endTime - SystemClock.uptimeMillis();
+			if(remaining <= 0 || !uiIdleDetector.waitForIdle((int) remaining)){
+				return false;
+			}
+			//消息队列空闲期间没有新的layout或draw，界面已稳定
+			if(getChangeCount() == changeCountBeforeIdle){
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 等待界面空闲，最多休息500ms，替代操作后的sleep()
+	 * Waits for the UI to become idle, but no longer than the default pause length.
+	 */
+
+	public void sleepUntilIdle() {
+		waitForUiIdle(PAUSE);
+	}
+
+	/**
+	 * 等待界面空闲，最多休息300ms，替代操作后的sleepMini()
+	 * Waits for the UI to become idle, but no longer than the default mini pause length.
+	 */
+
+	public void sleepMiniUntilIdle() {
+		waitForUiIdle(MINIPAUSE);
+	}
+
+	/**
+	 * 开始一次自适应轮询，轮询间隔由该操作以往达到条件所需的时间决定
+	 * Starts an adaptive poll for the given kind of operation. The first interval is seeded
+	 * from the median time the operation has needed to reach its condition so far, and the
+	 * interval then backs off exponentially up to a cap derived from the 90th percentile.
+	 *
+	 * @param operation the kind of operation, e.g. "waitForText"
+	 * @return the poll
+	 */
+
+	public Poll startPoll(String operation) {
+		SettleTimes settleTimes;
+		synchronized (settleTimesByOperation) {
+			settleTimes = settleTimesByOperation.get(operation);
+			if(settleTimes == null){
+				settleTimes = new SettleTimes(SETTLE_TIME_SAMPLES);
+				settleTimesByOperation.put(operation, settleTimes);
+			}
+		}
+		final int median = settleTimes.getPercentile(50);
+		final int percentile90 = settleTimes.getPercentile(90);
+
+		if(median < 0){
+			//没有历史数据时，从较短的间隔开始，最长不超过500ms
+			return new Poll(operation, settleTimes, INITIAL_POLL, PAUSE);
+		}
+		final int initialInterval = Math.max(MIN_CHANGE_PAUSE, Math.min(median, PAUSE));
+		final int maxInterval = Math.max(PAUSE, Math.min(percentile90 * 2, PAUSE * 2));
+		return new Poll(operation, settleTimes, initialInterval, maxInterval);
+	}
+
+
+	/**
+	 * 一次自适应轮询：每次休息的间隔按指数增长，达到条件时记录所用的时间。
+	 * 两次检查之间的休息都由它完成，并统计检查次数和休息的总时间
+	 * A single adaptive poll. Each sleep is twice as long as the previous one, up to a cap,
+	 * and the time needed to reach the condition is recorded when {@link #done()} is called.
+	 * The poll owns every delay between two attempts of an operation, so each iteration waits
+	 * exactly once, and it counts the iterations and the time spent waiting for diagnostics.
+	 */
+
+	class Poll {
+		private final String operation;
+		private final SettleTimes settleTimes;
+		private final long startTime;
+		private final int maxInterval;
+		private int interval;
+		//已经休息的次数和总时间
+		private int waitCount;
+		private long waitTime;
+
+		Poll(String operation, SettleTimes settleTimes, int initialInterval, int maxInterval) {
+			this.operation = operation;
+			this.settleTimes = settleTimes;
+			this.startTime = SystemClock.uptimeMillis();
+			this.interval = initialInterval;
+			this.maxInterval = maxInterval;
+		}
+
+		/**
+		 * 休息直到界面发生变化、达到当前的轮询间隔或者到达结束时间，然后增大间隔
+		 * Sleeps until the UI has changed since the given change count, the current interval
+		 * has passed or the given end time is reached, whichever comes first, then backs off.
+		 * The sleep never runs past the end time of the caller.
+		 *
+		 * @param sinceChangeCount the change count read before the condition was checked
+		 * @param endTime the uptime at which the caller times out
+		 */
+
+		public void sleepUntilChange(int sinceChangeCount, long endTime) {
+			final long sleepStartTime = SystemClock.uptimeMillis();
+			final long remaining = endTime - sleepStartTime;
+			if(remaining > 0){
+				Sleeper.this.sleepUntilChange(sinceChangeCount, (int) Math.min(interval, remaining));
+			}
+			interval = Math.min(interval * 2, maxInterval);
+			waitCount++;
+			waitTime += SystemClock.uptimeMillis() - sleepStartTime;
+		}
+
+		/**
+		 * 返回已经检查的次数，即休息的次数加一
+		 * Returns the number of iterations so far, i.e. one more than the number of waits.
+		 *
+		 * @return the number of iterations
+		 */
+
+		public int getIterationCount() {
+			return waitCount + 1;
+		}
+
+		/**
+		 * 返回休息的总时间
+		 * Returns the total time spent waiting between the iterations.
+		 *
+		 * @return the time in milliseconds
+		 */
+
+		public long getWaitTime() {
+			return waitTime;
+		}
+
+		/**
+		 * 返回从开始轮询到现在的时间
+		 * Returns the time since the poll was started.
+		 *
+		 * @return the time in milliseconds
+		 */
+
+		public long getElapsedTime() {
+			return SystemClock.uptimeMillis() - startTime;
+		}
+
+		@Override
+		public String toString() {
+			return operation + ": " + getIterationCount() + " iterations, waited " + waitTime + " of " + getElapsedTime() + " ms";
+		}
+
+		/**
+		 * 条件已满足，记录所用的时间
+		 * Records that the condition has been reached.
+		 */
+
+		public void done() {
+			settleTimes.add((int) (SystemClock.uptimeMillis() - startTime));
+		}
+	}
+
+	/**
+	 * 某种操作最近若干次达到条件所需的时间
+	 * The most recent times an operation has needed to reach its condition.
+	 */
+
+	static class SettleTimes {
+		private final int[] samples;
+		private int size;
+		private int next;
+
+		SettleTimes(int capacity) {
+			samples = new int[capacity];
+		}
+
+		synchronized void add(int time) {
+			samples[next] = time;
+			next = (next + 1) % samples.length;
+			if(size < samples.length){
+				size++;
+			}
+		}
+
+		/**
+		 * 返回指定百分位的时间
+		 * Returns the given percentile of the recorded times.
+		 *
+		 * @param percentile the percentile, from 0 to 100
+		 * @return the time or -1 if nothing has been recorded
+		 */
+
+		synchronized int getPercentile(int percentile) {
+			if(size == 0){
+				return -1;
+			}
+			final int[] sorted = Arrays.copyOf(samples, size);
+			Arrays.sort(sorted);
+			return sorted[Math.min(size - 1, (size * percentile) / 100)];
+		}
+	}
+
 }
@@ -2,6 +2,7 @@ package com.robotium.solo;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import junit.framework.Assert;
 import android.app.Activity;
 import android.app.Instrumentation;
@@ -203,7 +204,7 @@ public class Solo {
 		this.sleeper = new Sleeper();
 		this.sender = new Sender(instrumentation, sleeper);
 		this.activityUtils = new ActivityUtils(config, instrumentation, activity, sleeper);
-		this.viewFetcher = new ViewFetcher(instrumentation, sleeper);
+		this.viewFetcher = new ViewFetcher(config, instrumentation, sleeper);
 		this.screenshotTaker = new ScreenshotTaker(config, instrumentation, activityUtils, viewFetcher, sleeper);
 		this.dialogUtils = new DialogUtils(instrumentation, activityUtils, viewFetcher, sleeper);
 		this.webUtils = new WebUtils(config, instrumentation,activityUtils,viewFetcher, sleeper);
@@ -323,6 +324,28 @@ public class Solo {
 		
 		public String commandLoggingTag = "Robotium";
 		
+		/**
+		 * 在主线程中一次性采集view树，默认为false
+		 * Set to true if the view hierarchy should be captured on the main thread, in one
+		 * runOnMainSync call per change of the screen, instead of being read from the test thread.
+		 * The ids, classes, parents, tags, visibility, locations and the text of the views are
+		 * captured, and text, id, tag and view searches as well as waits read the captured state
+		 * instead of the live views. If a capture fails the views are read from the test thread.
+		 * Default value is false.
+		 */
+		
+		public boolean useMainThreadSnapshots = false;
+		
+		/**
+		 * 快速关闭Activity，默认为false。为true时finishOpenedActivities()在主线程中一次关闭所有Activity，
+		 * 只等待生命周期回调确认所有Activity已销毁，不再固定休息和按返回键
+		 * Set to true if {@link Solo#finishOpenedActivities()} should finish all tracked activities in
+		 * one main thread batch and only wait until the lifecycle callbacks confirm that they are
+		 * destroyed, without fixed sleeps or pressing back. Requires API level 14. Default value is false.
+		 */
+		
+		public boolean fastTeardown = false;
+		
 	}
 
 	/**
@@ -499,7 +522,7 @@ public class Solo {
 			Log.d(config.commandLoggingTag, "waitForText(\""+text+"\", "+minimumNumberOfMatches+", "+timeout+", "+scroll+", "+onlyVisible+")");
 		}
 		
-		return (waiter.waitForText(text, minimumNumberOfMatches, timeout, scroll, onlyVisible, true) != null);
+		return (waiter.waitForText(text, minimumNumberOfMatches, timeout, scroll, onlyVisible) != null);
 	}
 
 	/**
@@ -797,6 +820,60 @@ public class Solo {
 		return waiter.waitForCondition(condition, timeout);
 	}
 
+	/**
+	 * 等待任一条件满足，返回满足的条件的位置，所有条件在同一次view树快照上判断
+	 * Waits for any of the given conditions to be satisfied. Examples are WaitFor.text(String regex),
+	 * WaitFor.id(int id) and WaitFor.activity(String name). All conditions are checked against the
+	 * same view tree snapshot, so waiting for several outcomes costs no more than waiting for one.
+	 *
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @param conditions the conditions to wait for
+	 * @return the index of the first satisfied condition, or {@code -1} if none is satisfied before the timeout
+	 */
+
+	public int waitForAny(int timeout, WaitFor... conditions){
+		if(config.commandLogging){
+			Log.d(config.commandLoggingTag, "waitForAny("+timeout+", "+Arrays.toString(conditions)+")");
+		}
+		
+		return waiter.waitForAny(timeout, conditions);
+	}
+
+	/**
+	 * 等待所有条件同时满足，所有条件在同一次view树快照上判断
+	 * Waits for all of the given conditions to be satisfied at the same time. All conditions are
+	 * checked against the same view tree snapshot.
+	 *
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @param conditions the conditions to wait for
+	 * @return {@code true} if all conditions are satisfied and {@code false} if they are not satisfied before the timeout
+	 */
+
+	public boolean waitForAll(int timeout, WaitFor... conditions){
+		if(config.commandLogging){
+			Log.d(config.commandLoggingTag, "waitForAll("+timeout+", "+Arrays.toString(conditions)+")");
+		}
+		
+		return waiter.waitForAll(timeout, conditions);
+	}
+
+	/**
+	 * 等待界面空闲：主线程消息队列已处理完，且没有正在进行的layout或draw，可设置超时时间
+	 * Waits for the UI to become idle, i.e. for the message queue of the main thread to drain
+	 * while no window is laid out or drawn.
+	 *
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @return {@code true} if the UI became idle and {@code false} if it did not become idle before the timeout
+	 */
+
+	public boolean waitForUiIdle(int timeout){
+		if(config.commandLogging){
+			Log.d(config.commandLoggingTag, "waitForUiIdle("+timeout+")");
+		}
+		
+		return sleeper.waitForUiIdle(timeout);
+	}
+
 	/**
 	 * 在当前显示的编辑控件类中查找指定text，如果找到返回true，根据需要滚动界面刷新控件
 	 * Searches for a text in the EditText objects currently displayed and returns true if found. Will automatically scroll when needed.
@@ -1629,8 +1706,10 @@ public class Solo {
 	}
 
 	/**
-	 * 点击显示指定text的view或者webElement，可以设置点击第几个匹配的对象，可以设置是否滚动刷新界面控件
-	 * Clicks a View or WebElement displaying the specified text.
+	 * 点击显示指定text的view或者webElement，可以设置点击第几个匹配的对象，可以设置是否滚动刷新界面控件。
+	 * 查找和滚动在小超时时间到期时一起停止
+	 * Clicks a View or WebElement displaying the specified text. Looking for the text, including
+	 * scrolling, stops when the small timeout expires; scrolling does not continue past it.
 	 *
 	 * @param text the text to click. The parameter will be interpreted as a regular expression
 	 * @param match if multiple objects match the text, this determines which one to click
@@ -3825,8 +3904,9 @@ public class Solo {
 	}
 
 	/**
-	 * 等待指定logMessage的LogMessage出现，默认超时时间20s
+	 * 等待指定logMessage的LogMessage出现，默认超时时间20s。只检查最近读取的8192行日志
 	 * Waits for the specified log message to appear. Default timeout is 20 seconds.
+	 * Only the most recent 8192 lines of the log are kept, older lines are no longer searched.
 	 * Requires read logs permission (android.permission.READ_LOGS) in AndroidManifest.xml of the application under test.
 	 *
 	 * @param logMessage the log message to wait for
@@ -3844,8 +3924,9 @@ public class Solo {
 	}
 
 	/**
-	 * 等待指定logMessage的LogMessage出现，可设置超时时间
+	 * 等待指定logMessage的LogMessage出现，可设置超时时间。只检查最近读取的8192行日志
 	 * Waits for the specified log message to appear.
+	 * Only the most recent 8192 lines of the log are kept, older lines are no longer searched.
 	 * Requires read logs permission (android.permission.READ_LOGS) in AndroidManifest.xml of the application under test.
 	 *
 	 * @param logMessage the log message to wait for
@@ -3863,6 +3944,27 @@ public class Solo {
 		return waiter.waitForLogMessage(logMessage, timeout);
 	}
 
+	/**
+	 * 开始监视日志中的多个模式，每一行日志只扫描一次，匹配结果带时间记录下来，之后可以直接查询
+	 * Starts watching the log for several patterns at once. Every log line is scanned once for
+	 * all patterns, and the matches are recorded with the time the line was read. The log that
+	 * is already buffered is matched as well.
+	 * Requires read logs permission (android.permission.READ_LOGS) in AndroidManifest.xml of the application under test.
+	 *
+	 * @param patterns the patterns to watch for. The parameters will be interpreted as regular expressions
+	 * @return the {@link LogWatch} to wait for and query the matches with
+	 *
+	 * @see LogWatch#stop()
+	 */
+
+	public LogWatch watchLog(String... patterns){
+		if(config.commandLogging){
+			Log.d(config.commandLoggingTag, "watchLog("+Arrays.toString(patterns)+")");
+		}
+		
+		return waiter.watchLog(patterns);
+	}
+
 	/**
 	 * 清空log
 	 * Clears the log.
@@ -3939,6 +4041,7 @@ public class Solo {
 		}
 		
 		activityUtils.finalize();
+		waiter.finalize();
 	}
 
 	/**
@@ -3952,6 +4055,8 @@ public class Solo {
 		}
 		
 		activityUtils.finishOpenedActivities();
+		//测试结束，停止logcat进程
+		waiter.stopReadingLog();
 	}
 
 	/**
@@ -0,0 +1,214 @@
+package com.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import android.view.View;
+import android.widget.TextView;
+
+
+/**
+ * 一个快照上所有TextView文本的三元组倒排索引，覆盖文本、错误提示和文本为空时的hint。
+ * 查询时用模式中必然出现的普通文本片段筛选候选view，只有候选view需要再用匹配器验证
+ * A trigram index over the text of the TextViews of one snapshot, covering the text, the
+ * error and, if the text is empty, the hint, i.e. what {@link TextMatcher#matches(TextView)}
+ * checks. A query prefilters the views by the plain text fragments every match of the
+ * pattern has to contain, so only the candidates need to be verified with the matcher.
+ *
+ */
+
+class TextIndex {
+	//三元组到包含它的view位置列表的倒排表
+	private final Map<Long, Postings> postingsByTrigram;
+	//view在索引中的位置
+	private final Map<View, Integer> indexByView;
+	//索引中view的数量
+	private final int size;
+
+
+	/**
+	 * 为给定的TextView建立索引
+	 * Builds the index of the given text views.
+	 *
+	 * @param textViews the text views of a snapshot, in traversal order
+	 */
+
+	TextIndex(ArrayList<View> textViews) {
+		this(textViews, null);
+	}
+
+	/**
+	 * 为给定的TextView建立索引，主线程快照中采集过的view使用采集的文本
+	 * Builds the index of the given text views. The text captured on the main thread is used
+	 * for the views that are part of the given capture.
+	 *
+	 * @param textViews the text views of a snapshot, in traversal order
+	 * @param flatSnapshot the state captured on the main thread or {@code null}
+	 */
+
+	TextIndex(ArrayList<View> textViews, FlatViewSnapshot flatSnapshot) {
+		size = textViews.size();
+		postingsByTrigram = new HashMap<Long, Postings>();
+		indexByView = new IdentityHashMap<View, Integer>(size);
+
+		for(int i = 0; i < size; i++){
+			final View view = textViews.get(i);
+			if(!(view instanceof TextView)){
+				continue;
+			}
+			indexByView.put(view, Integer.valueOf(i));
+			final int capturedIndex = flatSnapshot != null ? flatSnapshot.indexOf(view) : -1;
+			if(capturedIndex >= 0){
+				final String text = flatSnapshot.getText(capturedIndex);
+				addTrigrams(text, i);
+				addTrigrams(flatSnapshot.getError(capturedIndex), i);
+				if(text == null || text.length() == 0){
+					addTrigrams(flatSnapshot.getHint(capturedIndex), i);
+				}
+				continue;
+			}
+			final TextView textView = (TextView) view;
+			final CharSequence text = textView.getText();
+			addTrigrams(text, i);
+			addTrigrams(textView.getError(), i);
+			if(text == null || text.length() == 0){
+				addTrigrams(textView.getHint(), i);
+			}
+		}
+	}
+
+	/**
+	 * 筛选出可能匹配的view，按原顺序返回。不在索引中的view(例如来自WebView的)全部保留
+	 * Returns the views that can match the given matcher, in their original order. Views that
+	 * are not part of this index, e.g. those created for web content, are always kept.
+	 *
+	 * @param views the views to filter
+	 * @param textMatcher the matcher of the query
+	 * @return a new list with the candidates
+	 */
+
+	public <T extends View> ArrayList<T> filter(ArrayList<T> views, TextMatcher textMatcher) {
+		final boolean[] candidates = getCandidates(textMatcher.getRequiredFragments());
+		if(candidates == null){
+			return views;
+		}
+		final ArrayList<T> filteredViews = new ArrayList<T>();
+		for(T view : views){
+			final Integer index = indexByView.get(view);
+			if(index == null || candidates[index.intValue()]){
+				filteredViews.add(view);
+			}
+		}
+		return filteredViews;
+	}
+
+	/**
+	 * 求所有片段的所有三元组倒排表的交集
+	 * Intersects the postings of every trigram of the given fragments.
+	 *
+	 * @param fragments the text every match contains
+	 * @return for every position, true if the view is a candidate, or {@code null} if the fragments do not narrow down the views
+	 */
+
+	private boolean[] getCandidates(String[] fragments) {
+		final ArrayList<Postings> required = new ArrayList<Postings>();
+
+		for(String fragment : fragments){
+			for(int i = 0; i + 3 <= fragment.length(); i++){
+				final Postings postings = postingsByTrigram.get(Long.valueOf(getTrigram(fragment, i)));
+				if(postings == null){
+					//有三元组没有出现在任何view中，没有候选
+					return new boolean[size];
+				}
+				required.add(postings);
+			}
+		}
+		if(required.isEmpty()){
+			return null;
+		}
+		//从最短的倒排表开始求交集
+		final Postings[] sorted = required.toArray(new Postings[required.size()]);
+		Arrays.sort(sorted, new Comparator<Postings>() {
+			public int compare(Postings lhs, Postings rhs) {
+				return lhs.size - rhs.size;
+			}
+		});
+		int[] intersection = Arrays.copyOf(sorted[0].positions, sorted[0].size);
+		int intersectionSize = sorted[0].size;
+		for(int p = 1; p < sorted.length && intersectionSize > 0; p++){
+			intersectionSize = intersect(intersection, intersectionSize, sorted[p]);
+		}
+		final boolean[] candidates = new boolean[size];
+		for(int i = 0; i < intersectionSize; i++){
+			candidates[intersection[i]] = true;
+		}
+		return candidates;
+	}
+
+	/**
+	 * 原地求有序位置列表与倒排表的交集
+	 * Intersects a sorted list of positions with postings, in place.
+	 *
+	 * @return the size of the intersection
+	 */
+
+	private static int intersect(int[] positions, int count, Postings postings) {
+		int size = 0;
+		int j = 0;
+		for(int i = 0; i < count; i++){
+			while(j < postings.size && postings.positions[j] < positions[i]){
+				j++;
+			}
+			if(j < postings.size && postings.positions[j] == positions[i]){
+				positions[size++] = positions[i];
+			}
+		}
+		return size;
+	}
+
+	//把文本的所有三元组加入倒排表
+	private void addTrigrams(CharSequence text, int position) {
+		if(text == null){
+			return;
+		}
+		for(int i = 0; i + 3 <= text.length(); i++){
+			final Long trigram = Long.valueOf(getTrigram(text, i));
+			Postings postings = postingsByTrigram.get(trigram);
+			if(postings == null){
+				postings = new Postings();
+				postingsByTrigram.put(trigram, postings);
+			}
+			postings.add(position);
+		}
+	}
+
+	//三个字符组成的键
+	private static long getTrigram(CharSequence text, int start) {
+		return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+	}
+
+
+	/**
+	 * 按升序保存的view位置列表
+	 * The positions of the views containing a trigram, in ascending order.
+	 */
+
+	private static class Postings {
+		int[] positions = new int[4];
+		int size;
+
+		void add(int position) {
+			//同一个view中重复出现的三元组只记录一次
+			if(size > 0 && positions[size - 1] == position){
+				return;
+			}
+			if(size == positions.length){
+				positions = Arrays.copyOf(positions, size * 2);
+			}
+			positions[size++] = position;
+		}
+	}
+}
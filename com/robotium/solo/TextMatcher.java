@@ -0,0 +1,358 @@
+package com.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import android.widget.TextView;
+
+
+/**
+ * 编译后的文本匹配器，一次查找只编译一次。不含正则元字符的模式按普通文本直接在CharSequence上查找，不调用toString()复制文本
+ * A text pattern compiled once per search. Patterns without regular expression metacharacters,
+ * and patterns that are not valid regular expressions, are matched as plain text directly on
+ * the {@code CharSequence} of a view, without copying it with {@code toString()}. All other
+ * patterns are matched with a {@link Pattern} compiled once.
+ *
+ */
+
+abstract class TextMatcher {
+	//正则表达式的元字符
+	private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+	//没有必然出现的文本片段
+	private static final String[] NO_FRAGMENTS = new String[0];
+	//编译前的模式
+	private final String regex;
+
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param regex the pattern this matcher was compiled from
+	 */
+
+	TextMatcher(String regex) {
+		this.regex = regex;
+	}
+
+	/**
+	 * 编译给定的模式
+	 * Compiles the given pattern.
+	 *
+	 * @param regex the pattern, interpreted as a regular expression
+	 * @return the compiled matcher
+	 */
+
+	public static TextMatcher compile(String regex) {
+		if(!hasMetacharacter(regex)){
+			return new LiteralMatcher(regex);
+		}
+		try{
+			return new RegexMatcher(regex, Pattern.compile(regex));
+		}catch(PatternSyntaxException e){
+			//不是合法的正则表达式时按普通文本匹配，与Pattern.LITERAL一致
+			return new LiteralMatcher(regex);
+		}
+	}
+
+	/**
+	 * 返回编译前的模式
+	 * Returns the pattern this matcher was compiled from.
+	 *
+	 * @return the pattern
+	 */
+
+	public String getRegex() {
+		return regex;
+	}
+
+	/**
+	 * 判断文本中是否包含匹配的部分
+	 * Checks if the given text contains a match.
+	 *
+	 * @param text the text to check
+	 * @return true if the text contains a match
+	 */
+
+	public abstract boolean find(CharSequence text);
+
+	/**
+	 * 返回每个匹配都必然包含的普通文本片段，用于在文本索引中筛选候选view
+	 * Returns plain text fragments that every match contains, used to prefilter candidates
+	 * in a {@link TextIndex}. An empty array means that nothing is known about the matches.
+	 *
+	 * @return the fragments every match contains
+	 */
+
+	public abstract String[] getRequiredFragments();
+
+	/**
+	 * 检查TextView的文本、错误提示，以及文本为空时的hint是否匹配
+	 * Checks if the text of the given view matches. The error of the view and, if the text is
+	 * empty, its hint are checked as well.
+	 *
+	 * @param view the view to check
+	 * @return true if the view matches
+	 */
+
+	public boolean matches(TextView view) {
+		return matches(view.getText(), view.getError(), view.getHint());
+	}
+
+	/**
+	 * 检查给定的文本、错误提示，以及文本为空时的hint是否匹配，用于主线程中采集的文本
+	 * Checks if the given text matches, or the given error or, if the text is empty, the given
+	 * hint. Used for text that was captured on the main thread.
+	 *
+	 * @param text the text of a view
+	 * @param error the error of the view or {@code null}
+	 * @param hint the hint of the view or {@code null}
+	 * @return true if the view matches
+	 */
+
+	public boolean matches(CharSequence text, CharSequence error, CharSequence hint) {
+		if(find(text)){
+			return true;
+		}
+		if(error != null && find(error)){
+			return true;
+		}
+		return text.length() == 0 && hint != null && find(hint);
+	}
+
+	/**
+	 * 保守地提取正则表达式中必然出现的普通文本片段：含有分支、内联标志或\Q时不提取，
+	 * 分组和字符类中的内容、可选的字符以及字母和数字转义(包括它们的参数)不计入片段
+	 * Conservatively extracts the plain text fragments every match of a regular expression
+	 * contains. Nothing is extracted from patterns with alternation, inline flags or quoting.
+	 * Groups, character classes, characters made optional by a quantifier and escapes with a
+	 * letter or a digit, together with their arguments such as the digits of {@code \x41},
+	 * end a fragment.
+	 *
+	 * @param regex the regular expression
+	 * @return the fragments every match contains
+	 */
+
+	static String[] extractRequiredFragments(String regex) {
+		if(regex.indexOf('|') >= 0 || regex.indexOf("(?") >= 0 || regex.indexOf("\\Q") >= 0){
+			return NO_FRAGMENTS;
+		}
+		final ArrayList<String> fragments = new ArrayList<String>();
+		final StringBuilder fragment = new StringBuilder();
+		//分组和字符类的嵌套深度
+		int groupDepth = 0;
+		int classDepth = 0;
+
+		for(int i = 0; i < regex.length(); i++){
+			char c = regex.charAt(i);
+			boolean literal = false;
+
+			if(c == '\\' && i + 1 < regex.length()){
+				c = regex.charAt(++i);
+				//\d、\w、\b等是字符类或边界，\x41、\cA等的参数也不是普通字符
+				literal = !Character.isLetterOrDigit(c);
+				if(!literal){
+					i = skipEscapeArgument(regex, i);
+				}
+			}
+			else if(c == '['){
+				//字符类可以嵌套，开头的]是普通字符
+				classDepth++;
+				if(i + 1 < regex.length() && regex.charAt(i + 1) == '^'){
+					i++;
+				}
+				if(i + 1 < regex.length() && regex.charAt(i + 1) == ']'){
+					i++;
+				}
+			}
+			else if(classDepth > 0){
+				if(c == ']'){
+					classDepth--;
+				}
+			}
+			else if(c == '('){
+				groupDepth++;
+			}
+			else if(c == ')'){
+				groupDepth--;
+			}
+			else if(c == '?' || c == '*' || c == '{'){
+				//前一个字符是可选的
+				if(fragment.length() > 0){
+					fragment.setLength(fragment.length() - 1);
+				}
+				//跳过{n,m}中的数字
+				if(c == '{'){
+					final int end = regex.indexOf('}', i);
+					i = end >= 0 ? end : regex.length();
+				}
+			}
+			else{
+				literal = METACHARACTERS.indexOf(c) < 0;
+			}
+
+			if(literal && classDepth == 0 && groupDepth == 0){
+				fragment.append(c);
+			}
+			else{
+				addFragment(fragments, fragment);
+			}
+			//量词后面的字符与前面的片段不一定相邻，转义的+是普通字符
+			if(c == '+' && !literal){
+				addFragment(fragments, fragment);
+			}
+		}
+		addFragment(fragments, fragment);
+		return fragments.toArray(new String[fragments.size()]);
+	}
+
+	/**
+	 * 跳过字母或数字转义的参数，例如\x41的两位十六进制数和\k<name>的组名
+	 * Skips the argument of an escape with a letter or a digit, e.g. the two hex digits of
+	 * {@code \x41} or the group name of {@code \k<name>}.
+	 *
+	 * @param regex the regular expression
+	 * @param i the position of the letter or digit after the backslash
+	 * @return the position of the last character of the escape
+	 */
+
+	private static int skipEscapeArgument(String regex, int i) {
+		final int last = regex.length() - 1;
+		final char c = regex.charAt(i);
+
+		switch(c){
+		case 'u':
+			return Math.min(i + 4, last);
+		case 'c':
+			return Math.min(i + 1, last);
+		case 'x':
+		case 'p':
+		case 'P':
+		case 'N':
+			if(i < last && regex.charAt(i + 1) == '{'){
+				return skipTo(regex, i, '}');
+			}
+			//\x41两位十六进制数，\pL一个字母
+			return c == 'x' ? Math.min(i + 2, last) : c == 'N' ? i : Math.min(i + 1, last);
+		case 'k':
+			return i < last && regex.charAt(i + 1) == '<' ? skipTo(regex, i, '>') : i;
+		case '0':
+			//最多三位八进制数
+			int octalEnd = i;
+			while(octalEnd < last && octalEnd - i < 3 && regex.charAt(octalEnd + 1) >= '0' && regex.charAt(octalEnd + 1) <= '7'){
+				octalEnd++;
+			}
+			return octalEnd;
+		default:
+			//多位数字的反向引用，例如\12
+			int digitEnd = i;
+			while(Character.isDigit(regex.charAt(digitEnd)) && digitEnd < last && Character.isDigit(regex.charAt(digitEnd + 1))){
+				digitEnd++;
+			}
+			return digitEnd;
+		}
+	}
+
+	//返回给定字符在指定位置之后第一次出现的位置，没有时返回最后一个位置
+	private static int skipTo(String regex, int i, char end) {
+		final int position = regex.indexOf(end, i);
+		return position >= 0 ? position : regex.length() - 1;
+	}
+
+	//保存当前片段并开始新的片段
+	private static void addFragment(ArrayList<String> fragments, StringBuilder fragment) {
+		if(fragment.length() > 0){
+			fragments.add(fragment.toString());
+			fragment.setLength(0);
+		}
+	}
+
+	/**
+	 * 判断模式是否包含正则元字符
+	 * Checks if the given pattern contains a regular expression metacharacter.
+	 *
+	 * @param regex the pattern
+	 * @return true if the pattern contains a metacharacter
+	 */
+
+	private static boolean hasMetacharacter(String regex) {
+		for(int i = 0; i < regex.length(); i++){
+			if(METACHARACTERS.indexOf(regex.charAt(i)) >= 0){
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * 普通文本匹配，直接在CharSequence上逐字符比较
+	 * Matches plain text, comparing the characters of the {@code CharSequence} in place.
+	 */
+
+	static class LiteralMatcher extends TextMatcher {
+		private final String literal;
+
+		LiteralMatcher(String literal) {
+			super(literal);
+			this.literal = literal;
+		}
+
+		@Override
+		public String[] getRequiredFragments() {
+			return new String[]{literal};
+		}
+
+		@Override
+		public boolean find(CharSequence text) {
+			if(text instanceof String){
+				return ((String) text).indexOf(literal) >= 0;
+			}
+			final int length = literal.length();
+			final int last = text.length() - length;
+			if(length == 0){
+				return true;
+			}
+			final char first = literal.charAt(0);
+			for(int start = 0; start <= last; start++){
+				if(text.charAt(start) != first){
+					continue;
+				}
+				int i = 1;
+				while(i < length && text.charAt(start + i) == literal.charAt(i)){
+					i++;
+				}
+				if(i == length){
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+
+	/**
+	 * 正则表达式匹配，Pattern只编译一次
+	 * Matches a regular expression compiled once.
+	 */
+
+	static class RegexMatcher extends TextMatcher {
+		private final Pattern pattern;
+		private final String[] requiredFragments;
+
+		RegexMatcher(String regex, Pattern pattern) {
+			super(regex);
+			this.pattern = pattern;
+			this.requiredFragments = extractRequiredFragments(regex);
+		}
+
+		@Override
+		public String[] getRequiredFragments() {
+			return requiredFragments;
+		}
+
+		@Override
+		public boolean find(CharSequence text) {
+			return pattern.matcher(text).find();
+		}
+	}
+}
@@ -34,6 +34,7 @@ public class Timeout{
 
 	/**
 	 * Sets the default timeout length of the get, is, set, assert, enter, type and click methods. Will fall back to the default values set by {@link Config}.
+	 * The timeout covers the whole lookup of the text to click, including scrolling.
 	 * <br><br>
 	 * Timeout can also be set through adb shell (requires root access):
 	 * <br><br>
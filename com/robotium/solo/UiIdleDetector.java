@@ -0,0 +1,94 @@
+package com.robotium.solo;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+
+
+/**
+ * 通过主线程消息队列的IdleHandler检测主线程是否空闲
+ * Detects when the main thread is idle, using a {@link MessageQueue.IdleHandler} registered
+ * on the queue of the main looper. The handler is called as soon as the queue has no more
+ * messages to process.
+ *
+ */
+
+class UiIdleDetector {
+	//主线程的Handler，第一次使用时创建
+	private Handler mainHandler;
+
+
+	/**
+	 * 等待主线程消息队列空闲
+	 * Waits for the message queue of the main thread to become idle.
+	 *
+	 * @param timeout the maximum amount of time in milliseconds to wait
+	 * @return {@code true} if the queue became idle and {@code false} if the timeout expired first
+	 */
+
+	public boolean waitForIdle(int timeout) {
+		final long endTime = SystemClock.uptimeMillis() + timeout;
+		final IdleLatch idleLatch = new IdleLatch();
+
+		//IdleHandler必须在主线程中注册到主线程的消息队列
+		getMainHandler().post(new Runnable() {
+			public void run() {
+				Looper.myQueue().addIdleHandler(idleLatch);
+			}
+		});
+		return idleLatch.await(endTime);
+	}
+
+	/**
+	 * 返回主线程的Handler
+	 * Returns a {@code Handler} for the main looper.
+	 *
+	 * @return a {@code Handler} for the main looper
+	 */
+
+	private synchronized Handler getMainHandler() {
+		if(mainHandler == null){
+			mainHandler = new Handler(Looper.getMainLooper());
+		}
+		return mainHandler;
+	}
+
+
+	/**
+	 * 消息队列空闲时被调用一次，然后自动移除
+	 * Idle handler that is called once, then removes itself, and wakes up the waiting thread.
+	 */
+
+	private static class IdleLatch implements MessageQueue.IdleHandler {
+		private boolean idle;
+
+		public synchronized boolean queueIdle() {
+			idle = true;
+			notifyAll();
+			//返回false，调用一次后从消息队列中移除
+			return false;
+		}
+
+		/**
+		 * 等待消息队列空闲，直到指定时间
+		 * Waits until the queue has become idle or the given time has been reached.
+		 *
+		 * @param endTime the uptime at which to give up
+		 * @return true if the queue became idle
+		 */
+
+		synchronized boolean await(long endTime) {
+			long remaining = endTime - SystemClock.uptimeMillis();
+			while(!idle && remaining > 0){
+				try {
+					wait(remaining);
+				} catch (InterruptedException ignored) {
+					return idle;
+				}
+				remaining = endTime - SystemClock.uptimeMillis();
+			}
+			return idle;
+		}
+	}
+}
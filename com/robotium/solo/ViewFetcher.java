@@ -1,10 +1,8 @@
 package com.robotium.solo;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import com.robotium.solo.Solo.Config;
 import android.app.Instrumentation;
 import android.content.Context;
 import android.os.SystemClock;
@@ -12,7 +10,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewParent;
 import android.view.WindowManager;
-import android.webkit.WebView;
+import android.widget.TextView;
 
 /**
  * Views的操作获取工具类，提供大量操作获取Views的方法
@@ -24,25 +22,54 @@ import android.webkit.WebView;
  */
 
 class ViewFetcher {
-	// 存储windowManager管理类的名字
-	private String windowManagerString;
 	//Android源码下的Instrumentation基类
 	private Instrumentation instrumentation;
 	private Sleeper sleeper;
+	//按窗口缓存的遍历结果，由layout和draw回调标记失效
+	private final ViewSnapshotCache snapshotCache;
+	//非递归遍历工具，复用同一个栈
+	private final ViewTraverser viewTraverser;
+	//把遍历到的view加入列表的访问者，复用同一个实例
+	private final ViewCollector viewCollector;
+	//isViewSufficientlyShown使用的坐标缓冲区，避免每个view都分配数组
+	private final int[] xyView = new int[2];
+	private final int[] xyParent = new int[2];
+	//最近一次的快照及其各窗口的遍历结果，分可见和全部两种
+	private ViewSnapshot visibleSnapshot;
+	private ArrayList<ArrayList<View>> visibleSnapshotParts;
+	private ViewSnapshot allSnapshot;
+	private ArrayList<ArrayList<View>> allSnapshotParts;
+	//WindowManager系统服务，用于获取屏幕高度
+	private WindowManager windowManagerService;
+	//屏幕上的窗口，字段只解析一次
+	private final WindowRegistry windowRegistry;
+	//上一次释放已关闭窗口的快照时的窗口版本
+	private int retainedWindowsVersion = -1;
+	private final Config config;
+	//主线程快照模式下最近一次采集的窗口、采集时各窗口的版本，以及采集结果
+	private ArrayList<View> capturedWindows;
+	private int[] capturedWindowVersions;
+	private ViewSnapshot capturedVisibleSnapshot;
+	private ViewSnapshot capturedAllSnapshot;
 
 	/**
 	 * ViewFetcher的构造方法
 	 * Constructs this object.
 	 *
+	 * @param config the {@code Config} used
 	 * @param instrumentation the {@code Instrumentation} instance.
+	 * @param sleeper the {@code Sleeper} instance
 	 *
 	 */
 
-	public ViewFetcher(Instrumentation instrumentation, Sleeper sleeper) {
+	public ViewFetcher(Config config, Instrumentation instrumentation, Sleeper sleeper) {
+		this.config = config;
 		this.instrumentation = instrumentation;
 		this.sleeper = sleeper;
-		//判断Android版本多对应的windowManager的字段名，并设置window管理类的名字
-		setWindowManagerString();
+		this.snapshotCache = new ViewSnapshotCache(sleeper);
+		this.viewTraverser = new ViewTraverser();
+		this.viewCollector = new ViewCollector();
+		this.windowRegistry = new WindowRegistry();
 	}
 
 
@@ -79,7 +106,7 @@ class ViewFetcher {
 
 	public View getScrollOrListParent(View view) {
 		//view不同时继承自ABSListView,ScrollView,WebView,则继续递归
-		if (!(view instanceof android.widget.AbsListView) && !(view instanceof android.widget.ScrollView) && !(view instanceof WebView)) {
+		if (!ViewTraverser.isScrollOrListContainer(view)) {
 			try{
 				return getScrollOrListParent((View) view.getParent());
 			}catch(Exception e){
@@ -99,35 +126,329 @@ class ViewFetcher {
 	 */
 
 	public ArrayList<View> getAllViews(boolean onlySufficientlyVisible) {
+		//返回快照的副本，调用者可以修改
+		return new ArrayList<View>(getSnapshot(onlySufficientlyVisible).getViews());
+	}
+
+	/**
+	 * 返回当前屏幕上所有view的快照，窗口都未变化时返回上一次的快照(包括其上已建立的索引)
+	 * Returns a snapshot of the views from the shown DecorViews. The previous snapshot, including
+	 * the indexes built on it, is returned if none of the windows has changed since.
+	 *
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be part of the snapshot
+	 * @return a snapshot of the views contained in the DecorViews
+	 */
+
+	public synchronized ViewSnapshot getSnapshot(boolean onlySufficientlyVisible) {
+		//主线程快照模式下，在主线程中一次性采集，采集失败时使用普通的快照
+		if(config != null && config.useMainThreadSnapshots){
+			final ViewSnapshot capturedSnapshot = getMainThreadSnapshot(onlySufficientlyVisible);
+			if(capturedSnapshot != null){
+				return capturedSnapshot;
+			}
+		}
+		return getLiveSnapshot(onlySufficientlyVisible);
+	}
+
+	/**
+	 * 在测试线程中遍历各窗口得到快照，窗口都未变化时返回上一次的快照
+	 * Returns a snapshot traversed on the test thread. The previous snapshot is returned if
+	 * none of the windows has changed since.
+	 *
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be part of the snapshot
+	 * @return a snapshot of the views contained in the DecorViews
+	 */
+
+	private ViewSnapshot getLiveSnapshot(boolean onlySufficientlyVisible) {
 		//final 修饰的变量一旦被赋值后，不可再次赋值    获取屏幕上的所有DecorViews类的数组，并赋值给views数组
 		final View[] views = getWindowDecorViews();
-		//新建一个arrayList
-		final ArrayList<View> allViews = new ArrayList<View>();
+		//每个窗口的遍历结果
+		final ArrayList<ArrayList<View>> windowParts = new ArrayList<ArrayList<View>>();
 		//返回所有非装饰类
 		final View[] nonDecorViews = getNonDecorViews(views);
-		View view = null;
+		//窗口有变化时，释放已经关闭的窗口的快照
+		retainOpenWindows(views);
 		//获取所有非DecorViews类的数组
 		if(nonDecorViews != null){
 			for(int i = 0; i < nonDecorViews.length; i++){
-				view = nonDecorViews[i];
-				try {
-					//遍历获取所有的View
-					addChildren(allViews, (ViewGroup)view, onlySufficientlyVisible);
-				} catch (Exception ignored) {}
-				if(view != null) allViews.add(view);
+				//遍历获取所有的View，窗口未变化时使用缓存
+				addWindowViews(windowParts, nonDecorViews[i], onlySufficientlyVisible);
 			}
 		}
 		//获取所有DecorViews数组包含的view
 		if (views != null && views.length > 0) {
-			view = getRecentDecorView(views);
+			//遍历获取所有的view，窗口未变化时使用缓存
+			addWindowViews(windowParts, getRecentDecorView(views), onlySufficientlyVisible);
+		}
+		//每个窗口的结果都和上一次相同时，复用上一次的快照
+		final ViewSnapshot previousSnapshot = onlySufficientlyVisible ? visibleSnapshot : allSnapshot;
+		final ArrayList<ArrayList<View>> previousParts = onlySufficientlyVisible ? visibleSnapshotParts : allSnapshotParts;
+		if(previousSnapshot != null && isSameParts(previousParts, windowParts)){
+			return previousSnapshot;
+		}
+		//新建一个arrayList
+		final ArrayList<View> allViews = new ArrayList<View>();
+		for(ArrayList<View> windowViews : windowParts){
+			allViews.addAll(windowViews);
+		}
+		final ViewSnapshot snapshot = new ViewSnapshot(allViews);
+		if(onlySufficientlyVisible){
+			visibleSnapshot = snapshot;
+			visibleSnapshotParts = windowParts;
+		}
+		else{
+			allSnapshot = snapshot;
+			allSnapshotParts = windowParts;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * 窗口有变化时，释放已经关闭的窗口的快照
+	 * Releases the cached traversals of closed windows, if the set of windows has changed.
+	 *
+	 * @param views the windows currently shown on the screen
+	 */
+
+	private void retainOpenWindows(View[] views) {
+		final int windowsVersion = windowRegistry.getVersion();
+		if(windowsVersion != retainedWindowsVersion){
+			snapshotCache.retainWindows(views);
+			retainedWindowsVersion = windowsVersion;
+		}
+	}
+
+	/**
+	 * 按快照的顺序返回需要遍历的窗口：先是非DecorView的窗口，最后是最新的DecorView
+	 * Returns the windows that make up a snapshot, in snapshot order.
+	 *
+	 * @param views the windows currently shown on the screen
+	 * @return the windows to traverse
+	 */
+
+	private ArrayList<View> getSnapshotWindows(View[] views) {
+		final ArrayList<View> windows = new ArrayList<View>();
+
+		if(views == null || views.length == 0){
+			return windows;
+		}
+		final View[] nonDecorViews = getNonDecorViews(views);
+		for(int i = 0; i < nonDecorViews.length; i++){
+			if(nonDecorViews[i] != null){
+				windows.add(nonDecorViews[i]);
+			}
+		}
+		final View recentDecorView = getRecentDecorView(views);
+		if(recentDecorView != null){
+			windows.add(recentDecorView);
+		}
+		return windows;
+	}
+
+	/**
+	 * 主线程快照模式：窗口都未变化时返回上一次采集的快照，否则在主线程中一次性重新采集所有窗口
+	 * Returns a snapshot captured on the main thread. All windows are captured in a single
+	 * {@code runOnMainSync} call, and the capture is reused until one of the windows is laid
+	 * out or drawn again, or a window is added or removed.
+	 *
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be part of the snapshot
+	 * @return a snapshot of the views contained in the DecorViews, or {@code null} if the capture failed
+	 */
+
+	private ViewSnapshot getMainThreadSnapshot(boolean onlySufficientlyVisible) {
+		final View[] views = getWindowDecorViews();
+		retainOpenWindows(views);
+		final ArrayList<View> windows = getSnapshotWindows(views);
+
+		if(!isCapturedSnapshotCurrent(windows)){
+			//采集前记录版本号，采集期间发生layout或draw时结果不会被当作最新
+			final int[] versions = new int[windows.size()];
+			for(int i = 0; i < windows.size(); i++){
+				versions[i] = snapshotCache.getSnapshot(windows.get(i)).getVersion();
+			}
+			if(!captureOnMainThread(windows)){
+				//不保留部分采集的结果，下一次查询重新采集
+				capturedWindows = null;
+				capturedAllSnapshot = null;
+				capturedVisibleSnapshot = null;
+				return null;
+			}
+			capturedWindows = windows;
+			capturedWindowVersions = versions;
+		}
+		return onlySufficientlyVisible ? capturedVisibleSnapshot : capturedAllSnapshot;
+	}
+
+	/**
+	 * 判断上一次采集的快照是否仍然是最新的
+	 * Checks if the last capture still reflects the given windows.
+	 *
+	 * @param windows the windows currently shown on the screen, in snapshot order
+	 * @return true if the last capture can be reused
+	 */
+
+	private boolean isCapturedSnapshotCurrent(ArrayList<View> windows) {
+		if(capturedAllSnapshot == null || capturedWindows == null || capturedWindows.size() != windows.size()){
+			return false;
+		}
+		for(int i = 0; i < windows.size(); i++){
+			final View window = windows.get(i);
+			if(capturedWindows.get(i) != window || !snapshotCache.getSnapshot(window).isCurrent(capturedWindowVersions[i])){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 在主线程中一次性遍历所有窗口，采集全部view和可见view
+	 * Traverses all given windows in one {@code runOnMainSync} call and stores the result as the
+	 * current capture, both as plain view lists and as a {@link FlatViewSnapshot} holding the
+	 * state the queries read. The capture uses its own traverser and buffers, as the test
+	 * thread may traverse at the same time. Nothing is stored if the capture fails.
+	 *
+	 * @param windows the windows to capture, in snapshot order
+	 * @return {@code true} if the windows were captured
+	 */
+
+	private boolean captureOnMainThread(final ArrayList<View> windows) {
+		final ArrayList<View> allViews = new ArrayList<View>();
+		final ArrayList<View> visibleViews = new ArrayList<View>();
+		final FlatViewSnapshot[] flatSnapshot = new FlatViewSnapshot[1];
+		//采集在主线程中进行，测试线程可能同时在遍历，所以不使用共享的遍历工具和坐标缓冲区
+		final ViewTraverser traverser = new ViewTraverser();
+		final ViewCollector collector = new ViewCollector();
+		final int[] xy = new int[2];
+		//WindowManager在测试线程中获取，主线程中只读取
+		getDisplayHeight();
+
+		instrumentation.runOnMainSync(new Runnable() {
+			public void run() {
+				try {
+					for(View window : windows){
+						if(window instanceof ViewGroup){
+							collector.start(allViews);
+							traverseChildren((ViewGroup) window, false, collector, traverser, xy);
+							collector.start(visibleViews);
+							traverseChildren((ViewGroup) window, true, collector, traverser, xy);
+							collector.finish();
+						}
+						allViews.add(window);
+						visibleViews.add(window);
+					}
+					flatSnapshot[0] = new FlatViewSnapshot(allViews);
+				} catch (Exception e) {
+					//例如遍历期间view树被修改
+					e.printStackTrace();
+				}
+			}
+		});
+		if(flatSnapshot[0] == null){
+			return false;
+		}
+		capturedAllSnapshot = new ViewSnapshot(allViews, flatSnapshot[0]);
+		capturedVisibleSnapshot = new ViewSnapshot(visibleViews, flatSnapshot[0]);
+		return true;
+	}
+
+	/**
+	 * 返回最近一次在主线程中采集的状态，不检查是否仍是最新的
+	 * Returns the state captured by the last main thread capture, i.e. the one the views of the
+	 * last query came from, without checking whether it is still current.
+	 *
+	 * @return the captured state or {@code null} if main thread snapshots are not used or the capture failed
+	 */
+
+	private synchronized FlatViewSnapshot getCapturedFlatSnapshot() {
+		if(config == null || !config.useMainThreadSnapshots || capturedAllSnapshot == null){
+			return null;
+		}
+		return capturedAllSnapshot.getFlatSnapshot();
+	}
+
+	/**
+	 * 检查TextView是否匹配，主线程快照模式下使用采集的文本
+	 * Checks if the given text view matches. In main thread snapshot mode the text captured
+	 * with the views of the last query is used instead of live view state.
+	 *
+	 * @param textMatcher the matcher
+	 * @param view the view to check
+	 * @return true if the view matches
+	 */
+
+	public boolean matches(TextMatcher textMatcher, TextView view) {
+		final FlatViewSnapshot flatSnapshot = getCapturedFlatSnapshot();
+		return flatSnapshot != null ? flatSnapshot.matches(textMatcher, view) : textMatcher.matches(view);
+	}
+
+	/**
+	 * 移除隐藏的view，主线程快照模式下使用采集时的状态，不再读取view的实时状态
+	 * Removes invisible views. In main thread snapshot mode the visibility captured with the
+	 * views of the last query is used instead of live view state.
+	 *
+	 * @param views the views to filter
+	 * @return a new list with the visible views
+	 */
+
+	public <T extends View> ArrayList<T> removeInvisibleViews(Iterable<T> views) {
+		final FlatViewSnapshot flatSnapshot = getCapturedFlatSnapshot();
+
+		if(flatSnapshot != null){
+			return flatSnapshot.removeInvisibleViews(views);
+		}
+		return RobotiumUtils.removeInvisibleViews(views);
+	}
+
+	/**
+	 * 判断两次获取的各窗口结果是否是同一批缓存的列表
+	 * Checks if the window parts of two snapshots are the very same cached lists.
+	 *
+	 * @param previousParts the window parts of the previous snapshot
+	 * @param windowParts the current window parts
+	 * @return true if all parts are identical
+	 */
+
+	private boolean isSameParts(ArrayList<ArrayList<View>> previousParts, ArrayList<ArrayList<View>> windowParts) {
+		if(previousParts == null || previousParts.size() != windowParts.size()){
+			return false;
+		}
+		for(int i = 0; i < windowParts.size(); i++){
+			if(previousParts.get(i) != windowParts.get(i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 把窗口中的所有view(包括窗口自己)的列表加入windowParts，窗口自上次遍历后未layout或draw时直接使用缓存的结果
+	 * Adds the list of all the views of a window, including the window itself, to the given
+	 * window parts. The last traversal of the window is reused if it has not been laid out or
+	 * drawn since.
+	 *
+	 * @param windowParts the list to add the views of the window to
+	 * @param window the root view of the window
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be added
+	 */
+
+	private void addWindowViews(ArrayList<ArrayList<View>> windowParts, View window, boolean onlySufficientlyVisible) {
+		if(window == null){
+			return;
+		}
+		final ViewSnapshotCache.WindowSnapshot snapshot = snapshotCache.getSnapshot(window);
+		ArrayList<View> windowViews = snapshot.getViews(onlySufficientlyVisible);
+
+		if(windowViews == null){
+			//遍历前记录版本号，遍历期间发生layout或draw时结果不会被当作最新
+			final int version = snapshot.getVersion();
+			windowViews = new ArrayList<View>();
 			try {
-				//遍历获取所有的view
-				addChildren(allViews, (ViewGroup)view, onlySufficientlyVisible);
+				addChildren(windowViews, (ViewGroup)window, onlySufficientlyVisible);
 			} catch (Exception ignored) {}
-			if(view != null) allViews.add(view);
+			windowViews.add(window);
+			snapshot.setViews(onlySufficientlyVisible, windowViews, version);
 		}
-
-		return allViews;
+		windowParts.add(windowViews);
 	}
 
 	/**
@@ -262,20 +583,214 @@ class ViewFetcher {
 	private void addChildren(ArrayList<View> views, ViewGroup viewGroup, boolean onlySufficientlyVisible) {
 		//null判断
 		if(viewGroup != null){
-			for (int i = 0; i < viewGroup.getChildCount(); i++) {
-				//申明临时符合型变量，并赋值
-				final View child = viewGroup.getChildAt(i);
-				//添加可点击，并且可见的view
-				if(onlySufficientlyVisible && isViewSufficientlyShown(child))
-					views.add(child);
-				//添加所有view，不管是否可点击
-				else if(!onlySufficientlyVisible)
-					views.add(child);
-				//如果view是viewGroup，继续迭代
-				if (child instanceof ViewGroup) {
-					addChildren(views, (ViewGroup) child, onlySufficientlyVisible);
+			//访问者正在使用中(重入)时，新建一个
+			final ViewCollector collector = viewCollector.isInUse() ? new ViewCollector() : viewCollector;
+			collector.start(views);
+			try{
+				traverseChildren(viewGroup, onlySufficientlyVisible, collector);
+			}finally{
+				collector.finish();
+			}
+		}
+	}
+
+	/**
+	 * 把viewGroup的子view依次交给访问者，访问者返回false时立即停止
+	 * Hands the descendants of the given {@code ViewGroup} to a visitor, in the same order as
+	 * {@link #addChildren(ArrayList, ViewGroup, boolean)}. Stops as soon as the visitor returns false.
+	 *
+	 * @param viewGroup the {@code ViewGroup} whose descendants should be visited
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be visited
+	 * @param visitor the visitor
+	 * @return {@code true} if all views were visited and {@code false} if the visitor stopped the traversal
+	 */
+
+	private boolean traverseChildren(ViewGroup viewGroup, boolean onlySufficientlyVisible, ViewTraverser.Visitor visitor) {
+		return traverseChildren(viewGroup, onlySufficientlyVisible, visitor, viewTraverser, xyParent);
+	}
+
+	/**
+	 * 使用给定的遍历工具和坐标缓冲区遍历viewGroup的子view
+	 * Hands the descendants of the given {@code ViewGroup} to a visitor, using the given traverser
+	 * and location buffer instead of the shared ones.
+	 *
+	 * @param viewGroup the {@code ViewGroup} whose descendants should be visited
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be visited
+	 * @param visitor the visitor
+	 * @param traverser the traverser to use
+	 * @param xy the buffer for the location of the scroll or list parent
+	 * @return {@code true} if all views were visited and {@code false} if the visitor stopped the traversal
+	 */
+
+	private boolean traverseChildren(ViewGroup viewGroup, boolean onlySufficientlyVisible, ViewTraverser.Visitor visitor, ViewTraverser traverser, int[] xy) {
+		//用显式栈非递归遍历，顺序与递归遍历一致
+		if(onlySufficientlyVisible){
+			//只为起点计算一次最近的滚动/列表容器边界，之后自顶向下传递
+			final View parent = getScrollOrListParent(viewGroup);
+			int clipTop = 0;
+			int clipBottom = getDisplayHeight();
+			if(parent != null){
+				parent.getLocationOnScreen(xy);
+				clipTop = xy[1];
+				clipBottom = xy[1] + parent.getHeight();
+			}
+			return traverser.traverseSufficientlyShown(viewGroup, clipTop, clipBottom, visitor);
+		}
+		return traverser.traverse(viewGroup, visitor);
+	}
+
+	/**
+	 * view的过滤条件
+	 * A condition that views are matched against.
+	 */
+
+	interface ViewFilter {
+
+		/**
+		 * 判断view是否符合条件
+		 * Checks if the given view matches.
+		 *
+		 * @param view the view to check, never {@code null}
+		 * @return true if the view matches
+		 */
+		public boolean matches(View view);
+	}
+
+	/**
+	 * 按与getAllViews相同的顺序查找第index个符合条件的view，找到后立即停止遍历，不生成完整的view列表
+	 * Returns the view at the given index among the views matching the given filter, in the order of
+	 * {@link #getAllViews(boolean)}. The windows are walked lazily and the walk stops as soon as the
+	 * match is found; windows whose traversal is cached are served from the cache.
+	 *
+	 * @param filter the filter the views must match
+	 * @param index the index of the matching view, {@code 0} for the first match
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be considered
+	 * @return the matching view or {@code null} if there are not enough matching views
+	 */
+
+	public synchronized View getView(ViewFilter filter, int index, boolean onlySufficientlyVisible) {
+		final ViewFinder finder = new ViewFinder(filter, index);
+
+		//主线程快照模式下在采集结果中查找
+		if(config != null && config.useMainThreadSnapshots){
+			for(View view : getSnapshot(onlySufficientlyVisible).getViews()){
+				if(!finder.visit(view)){
+					break;
+				}
+			}
+			return finder.found;
+		}
+		//窗口顺序与getSnapshot一致
+		for(View window : getSnapshotWindows(getWindowDecorViews())){
+			if(!findInWindow(window, onlySufficientlyVisible, finder)){
+				break;
+			}
+		}
+		return finder.found;
+	}
+
+	/**
+	 * 在一个窗口中查找，窗口的遍历结果已缓存时直接使用缓存
+	 * Hands the views of a window to the given finder, using the cached traversal if there is one.
+	 *
+	 * @param window the root view of the window
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be considered
+	 * @param finder the finder
+	 * @return {@code true} if the search should continue with the next window
+	 */
+
+	private boolean findInWindow(View window, boolean onlySufficientlyVisible, ViewFinder finder) {
+		if(window == null){
+			return true;
+		}
+		final ArrayList<View> cachedViews = snapshotCache.getSnapshot(window).getViews(onlySufficientlyVisible);
+
+		if(cachedViews != null){
+			for(int i = 0; i < cachedViews.size(); i++){
+				if(!finder.visit(cachedViews.get(i))){
+					return false;
 				}
 			}
+			return true;
+		}
+		try {
+			if(!traverseChildren((ViewGroup) window, onlySufficientlyVisible, finder)){
+				return false;
+			}
+		} catch (Exception ignored) {}
+		//窗口自己排在其子view之后
+		return finder.visit(window);
+	}
+
+	/**
+	 * 查找第index个符合条件的view的访问者，找到后停止遍历
+	 * Visitor that stops the traversal at the view with the given index among the matching views.
+	 */
+
+	private static class ViewFinder implements ViewTraverser.Visitor {
+		private final ViewFilter filter;
+		//还需要跳过的符合条件的view的数量
+		private int remaining;
+		//找到的view
+		View found;
+
+		ViewFinder(ViewFilter filter, int index) {
+			this.filter = filter;
+			this.remaining = index;
+		}
+
+		public boolean visit(View view) {
+			if(view == null || !filter.matches(view)){
+				return true;
+			}
+			if(remaining-- > 0){
+				return true;
+			}
+			found = view;
+			return false;
+		}
+	}
+
+	/**
+	 * 把遍历到的view加入列表的访问者，可见性由遍历工具过滤
+	 * Visitor that adds the visited views to a list.
+	 */
+
+	private class ViewCollector implements ViewTraverser.Visitor {
+		//存放结果的列表
+		private ArrayList<View> views;
+
+		/**
+		 * Prepares this visitor for a traversal.
+		 *
+		 * @param views the list to add the views to
+		 */
+
+		void start(ArrayList<View> views) {
+			this.views = views;
+		}
+
+		/**
+		 * Releases the list after a traversal.
+		 */
+
+		void finish() {
+			views = null;
+		}
+
+		/**
+		 * Returns true if this visitor is part of an ongoing traversal.
+		 *
+		 * @return true if in use
+		 */
+
+		boolean isInUse() {
+			return views != null;
+		}
+
+		public boolean visit(View view) {
+			views.add(view);
+			return true;
 		}
 	}
 
@@ -288,32 +803,33 @@ class ViewFetcher {
 	 */
 
 	public final boolean isViewSufficientlyShown(View view){
-		//申明一个int类型的数组，放视图的xy坐标值
-		final int[] xyView = new int[2];
-		//申明一个int类型的数组，放父视图的xy坐标值
-		final int[] xyParent = new int[2];
-		
 		//null值判断
 		if(view == null)
 			return false;
 		//获取view的高度
 		final float viewHeight = view.getHeight();
-		//获取view的宿主容器
+		//获取view的宿主容器，只查找一次
 		final View parent = getScrollOrListParent(view);
-		//获取view的xy坐标值
+		//获取view的xy坐标值，放入复用的坐标缓冲区
 		view.getLocationOnScreen(xyView);
-		//如果无宿主容器，那么宿主容器的坐标为0
+		final float parentTop;
+		final float parentBottom;
+		//如果无宿主容器，那么宿主容器的坐标为0，高度为屏幕高度
 		if(parent == null){
-			xyParent[1] = 0;
+			parentTop = 0;
+			parentBottom = getDisplayHeight();
 		}else{
-			//如果有宿主容器，获取宿主容器的xy坐标
+			//如果有宿主容器，获取宿主容器的xy坐标和高度
 			parent.getLocationOnScreen(xyParent);
+			parentTop = xyParent[1];
+			parentBottom = xyParent[1] + parent.getHeight();
 		}
+		final float viewCenterY = xyView[1] + (viewHeight/2.0f);
 		//如果视图的Y坐标值+视图高度的一半>视图滚动条或者父视图的高度，则视图不可见，返回false
-		if(xyView[1] + (viewHeight/2.0f) > getScrollListWindowHeight(view))
+		if(viewCenterY > parentBottom)
 			return false;
 		//如果视图的Y坐标值+视图高度的一半<视图滚动条或者父视图的一半，则视图可见，返回true
-		else if(xyView[1] + (viewHeight/2.0f) < xyParent[1])
+		else if(viewCenterY < parentTop)
 			return false;
 
 		return true;
@@ -326,21 +842,16 @@ class ViewFetcher {
 	 * @return the height of the scroll or list view parent
 	 */
 
-	@SuppressWarnings("deprecation")
 	public float getScrollListWindowHeight(View view) {
-		//申明xy坐标变量
-		final int[] xyParent = new int[2];
 		//获取view的宿主容器
 		View parent = getScrollOrListParent(view);
 		//申明一个浮点型变量
 		final float windowHeight;
 		//如果view没有宿主容器，直接获取当前Activity的高度
 		if(parent == null){
-			WindowManager windowManager = (WindowManager) 
-					instrumentation.getTargetContext().getSystemService(Context.WINDOW_SERVICE);
-			windowHeight = windowManager.getDefaultDisplay().getHeight();
+			windowHeight = getDisplayHeight();
 		}
-		//获取宿主容器的高度
+		//获取宿主容器的高度，使用复用的坐标缓冲区
 		else{
 			parent.getLocationOnScreen(xyParent);
 			windowHeight = xyParent[1] + parent.getHeight();
@@ -350,6 +861,22 @@ class ViewFetcher {
 	}
 
 
+	/**
+	 * 返回屏幕的高度，WindowManager只获取一次
+	 * Returns the height of the default display. The {@code WindowManager} is only looked up once.
+	 *
+	 * @return the height of the default display
+	 */
+
+	@SuppressWarnings("deprecation")
+	private int getDisplayHeight() {
+		if(windowManagerService == null){
+			windowManagerService = (WindowManager) 
+					instrumentation.getTargetContext().getSystemService(Context.WINDOW_SERVICE);
+		}
+		return windowManagerService.getDefaultDisplay().getHeight();
+	}
+
 	/**
 	 * 根据给定过滤类型，返回所有该类型的试图
 	 * classToFilterBy 给定过滤类型
@@ -366,6 +893,24 @@ class ViewFetcher {
 		return getCurrentViews(classToFilterBy, includeSubclasses, null);
 	}
 
+	/**
+	 * 返回当前屏幕上指定类型(包括子类)中文本可能匹配的view，用快照的文本索引筛选，调用者仍需用匹配器验证
+	 * Returns the views of the specified class, including subclasses, whose text can match the
+	 * given matcher. The views are prefiltered with the text index of the current snapshot,
+	 * so callers still have to verify them with the matcher.
+	 *
+	 * @param classToFilterBy return all instances of this class, e.g. {@code Button.class} or {@code TextView.class}
+	 * @param textMatcher the matcher the text has to match
+	 * @return the candidate views, in traversal order
+	 */
+
+	@SuppressWarnings("unchecked")
+	public <T extends TextView> ArrayList<T> getCurrentViews(Class<T> classToFilterBy, TextMatcher textMatcher) {
+		final ViewSnapshot snapshot = getSnapshot(true);
+		final ArrayList<T> views = new ArrayList<T>((ArrayList<T>) (ArrayList<?>) snapshot.getViews(classToFilterBy, true));
+		return snapshot.getTextIndex().filter(views, textMatcher);
+	}
+
 	/**
 	 * 
 	 * Returns an {@code ArrayList} of {@code View}s of the specified {@code Class} located under the specified {@code parent}.
@@ -376,7 +921,12 @@ class ViewFetcher {
 	 * @return an {@code ArrayList} of {@code View}s of the specified {@code Class} located under the specified {@code parent}
 	 */
 
+	@SuppressWarnings("unchecked")
 	public <T extends View> ArrayList<T> getCurrentViews(Class<T> classToFilterBy, boolean includeSubclasses, View parent) {
+		//从当前屏幕开始时，直接使用快照上的类型索引
+		if(parent == null){
+			return new ArrayList<T>((ArrayList<T>) (ArrayList<?>) getSnapshot(true).getViews(classToFilterBy, includeSubclasses));
+		}
 		ArrayList<T> filteredViews = new ArrayList<T>();
 		//给定类型中的所有View
 		List<View> allViews = getViews(parent, true);
@@ -396,6 +946,48 @@ class ViewFetcher {
 		return filteredViews;
 	}
 
+	/**
+	 * 返回属于任一给定类型(包括子类)的所有view，只遍历一次
+	 * Returns the {@code View}s that are instances of any of the given classes, or of their
+	 * subclasses. All classes are served from one traversal.
+	 *
+	 * @param classes the classes to filter by, e.g. {@code ListView.class} and {@code ScrollView.class}
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be returned
+	 * @return an {@code ArrayList} of the {@code View}s of the given classes, in traversal order
+	 */
+
+	public ArrayList<View> getCurrentViews(Class<?>[] classes, boolean onlySufficientlyVisible) {
+		return getSnapshot(onlySufficientlyVisible).getViews(classes, true);
+	}
+
+
+	/**
+	 * 通过快照上的id索引返回指定id的所有view，调用者不能修改返回的列表
+	 * Returns the {@code View}s with the given id, served from the id index of the current snapshot.
+	 * The returned list must not be modified.
+	 *
+	 * @param id the resource id of the views
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be returned
+	 * @return the {@code View}s with the given id, in traversal order
+	 */
+
+	public ArrayList<View> getViewsWithId(int id, boolean onlySufficientlyVisible) {
+		return getSnapshot(onlySufficientlyVisible).getViewsWithId(id);
+	}
+
+	/**
+	 * 通过快照上的tag索引返回指定tag的所有view，调用者不能修改返回的列表
+	 * Returns the {@code View}s with the given tag, served from the tag index of the current snapshot.
+	 * The returned list must not be modified.
+	 *
+	 * @param tag the tag of the views
+	 * @param onlySufficientlyVisible if only sufficiently visible views should be returned
+	 * @return the {@code View}s with the given tag, in traversal order
+	 */
+
+	public ArrayList<View> getViewsWithTag(Object tag, boolean onlySufficientlyVisible) {
+		return getSnapshot(onlySufficientlyVisible).getViewsWithTag(tag);
+	}
 
 	/**
 	 * 返回views中的最新可见试图
@@ -413,6 +1005,8 @@ class ViewFetcher {
 	public final <T extends View> T getFreshestView(ArrayList<T> views){
 		//临时变量，储存xy坐标
 		final int[] locationOnScreen = new int[2];
+		//主线程快照模式下使用采集时的位置、高度和绘制时间
+		final FlatViewSnapshot flatSnapshot = getCapturedFlatSnapshot();
 		T viewToReturn = null;
 		long drawingTime = 0;
 		if(views == null){
@@ -421,13 +1015,20 @@ class ViewFetcher {
 		//根据view的坐标点，和绘制时间来判断view是否是最新view
 		for(T view : views){
 			//获取view的坐标
-			view.getLocationOnScreen(locationOnScreen);
+			if(flatSnapshot != null){
+				flatSnapshot.getLocationOnScreen(view, locationOnScreen);
+			}
+			else{
+				view.getLocationOnScreen(locationOnScreen);
+			}
 			//横坐标的负值判断
 			if (locationOnScreen[0] < 0 ) 
 				continue;
+			final long drawingTimeOfView = flatSnapshot != null ? flatSnapshot.getDrawingTime(view) : view.getDrawingTime();
+			final int heightOfView = flatSnapshot != null ? flatSnapshot.getHeight(view) : view.getHeight();
 			//根据view的绘制时间，和view的高度来判断view是否是最新view
-			if(view.getDrawingTime() > drawingTime && view.getHeight() > 0){
-				drawingTime = view.getDrawingTime();
+			if(drawingTimeOfView > drawingTime && heightOfView > 0){
+				drawingTime = drawingTimeOfView;
 				viewToReturn = view;
 			}
 		}
@@ -468,26 +1069,15 @@ class ViewFetcher {
 	 */
 	
 	public View getRecyclerView(boolean shouldSleep, int recyclerViewIndex){
-		Set<View> uniqueViews = new HashSet<View>();
 		if(shouldSleep){
 			sleeper.sleep();
 		}
-
-		@SuppressWarnings("unchecked")
-		ArrayList<View> views = RobotiumUtils.filterViewsToSet(new Class[] {ViewGroup.class}, getAllViews(true));
-		views = RobotiumUtils.removeInvisibleViews(views);
-
-		for(View view : views){
-
-			if(isViewType(view.getClass(), "widget.RecyclerView")){
-				uniqueViews.add(view);
-			}
-
-			if(uniqueViews.size() > recyclerViewIndex) {
-				return (ViewGroup) view;
+		//找到第recyclerViewIndex个RecyclerView后立即停止遍历
+		return getView(new ViewFilter() {
+			public boolean matches(View view) {
+				return view instanceof ViewGroup && view.isShown() && isViewType(view.getClass(), "widget.RecyclerView");
 			}
-		}
-		return null;
+		}, recyclerViewIndex, true);
 	}
 	
 	 //判断aClass的类名中是否包含typeName
@@ -505,7 +1095,9 @@ class ViewFetcher {
 
 	/**
 	 * 返回相等的view以指定的view
-	 * Returns an identical View to the one specified.
+	 * Returns an identical View to the one specified. Only the visible views of the same
+	 * concrete class and id are compared, served from an index of the current snapshot, and
+	 * each comparison only walks the parents the two views have in common.
 	 * 
 	 * @param view the view to find
 	 * @return identical view of the specified view
@@ -515,19 +1107,48 @@ class ViewFetcher {
 		if(view == null){
 			return null;
 		}
-		View viewToReturn = null;
-		//根据view类型，返回当前Activity的所有该试图，并去除view中的隐藏view
-		List<? extends View> visibleViews = RobotiumUtils.removeInvisibleViews(getCurrentViews(view.getClass(), true));
-		
-		for(View v : visibleViews){
-			//判断两个view是否相等；
-			if(areViewsIdentical(v, view)){
-				viewToReturn = v;
-				break;
+		final ViewSnapshot snapshot = getSnapshot(true);
+		final FlatViewSnapshot flatSnapshot = snapshot.getFlatSnapshot();
+		//相等的view必然与指定view的具体类型和id都相同，通过快照上的索引一次查找得到候选view
+		for(View v : snapshot.getViewsWithClassAndId(view.getClass(), view.getId())){
+			if(!snapshot.isShown(v)){
+				continue;
+			}
+			//判断两个view是否相等，只比较两条父view链共同的部分，主线程快照使用采集的父view链
+			final int capturedIndex = flatSnapshot != null ? flatSnapshot.indexOf(v) : -1;
+			if(capturedIndex >= 0 ? areViewsIdentical(flatSnapshot, capturedIndex, view) : areViewsIdentical(v, view)){
+				return v;
 			}
 		}
-		//放回相等的view
-		return viewToReturn;
+		return null;
+	}
+
+	/**
+	 * 与{@link #areViewsIdentical(View, View)}相同，第一个view的id、类型和父view链从采集的状态中读取
+	 * Compares views like {@link #areViewsIdentical(View, View)}, reading the id, the class and
+	 * the parents of the first view from the state captured on the main thread.
+	 *
+	 * @param flatSnapshot the captured state
+	 * @param capturedIndex the position of the first view in the captured state
+	 * @param view the second view
+	 * @return true if views are equal
+	 */
+
+	private boolean areViewsIdentical(FlatViewSnapshot flatSnapshot, int capturedIndex, View view){
+		int index = capturedIndex;
+		View current = view;
+
+		while(true){
+			if(flatSnapshot.getId(index) != current.getId() || !flatSnapshot.getViewClass(index).isAssignableFrom(current.getClass())){
+				return false;
+			}
+			final ViewParent parent = current.getParent();
+			index = flatSnapshot.getParentIndex(index);
+			if(index == FlatViewSnapshot.NO_PARENT || !(parent instanceof View)){
+				return true;
+			}
+			current = (View) parent;
+		}
 	}
 
 	/**
@@ -554,76 +1175,28 @@ class ViewFetcher {
 		}
 	}
 
-	private static Class<?> windowManager;
-	static{
-		try {
-			String windowManagerClassName;
-			if (android.os.Build.VERSION.SDK_INT >= 17) {
-				windowManagerClassName = "android.view.WindowManagerGlobal";
-			} else {
-				windowManagerClassName = "android.view.WindowManagerImpl"; 
-			}
-			windowManager = Class.forName(windowManagerClassName);
-
-		} catch (ClassNotFoundException e) {
-			throw new RuntimeException(e);
-		} catch (SecurityException e) {
-			e.printStackTrace();
-		}
-	}
-
 	/**
-	 * 返回屏幕上的所有装饰类
-	 * Returns the WindorDecorViews shown on the screen.
+	 * 返回屏幕上的所有装饰类，窗口未变化时返回同一个数组，调用者不能修改
+	 * Returns the WindorDecorViews shown on the screen. The same array is returned as long as
+	 * no window has been added or removed, so it must not be modified.
 	 * 
 	 * @return the WindorDecorViews shown on the screen
 	 */
 
-	@SuppressWarnings("unchecked")
 	public View[] getWindowDecorViews()
 	{
-
-		Field viewsField;
-		Field instanceField;
-		try {
-			//
-			viewsField = windowManager.getDeclaredField("mViews");
-			//
-			instanceField = windowManager.getDeclaredField(windowManagerString);
-			//
-			viewsField.setAccessible(true);
-			//
-			instanceField.setAccessible(true);
-			Object instance = instanceField.get(null);
-			View[] result;
-			if (android.os.Build.VERSION.SDK_INT >= 19) {
-				result = ((ArrayList<View>) viewsField.get(instance)).toArray(new View[0]);
-			} else {
-				result = (View[]) viewsField.get(instance);
-			}
-			return result;
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		return null;
+		return windowRegistry.getWindows();
 	}
 
 	/**
-	 * 判断当前Android版本对应的WindowManager对象字段名 ，并设置window管理类的名字
-	 * Sets the window manager string.
+	 * 返回窗口集合的版本号，窗口添加或者移除后加1
+	 * Returns the version of the set of windows shown on the screen. It changes whenever a
+	 * window has been added or removed, as seen by {@link #getWindowDecorViews()}.
+	 *
+	 * @return the version of the set of windows
 	 */
-	private void setWindowManagerString(){
-
-		if (android.os.Build.VERSION.SDK_INT >= 17) {
-			windowManagerString = "sDefaultWindowManager";
-
-		} else if(android.os.Build.VERSION.SDK_INT >= 13) {
-			windowManagerString = "sWindowManager";
 
-		} else {
-			windowManagerString = "mWindowManager";
-		}
+	public int getWindowDecorViewsVersion() {
+		return windowRegistry.getVersion();
 	}
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,410 @@
+package com.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import android.util.SparseArray;
+import android.view.View;
+import android.widget.TextView;
+
+
+/**
+ * 一次遍历得到的所有view，以及在其上按需建立的索引
+ * The views found by one traversal of the windows on the screen, together with indexes
+ * that are built on first use and then shared by every query against the same snapshot.
+ * A snapshot is immutable; the view tree is not traversed again until it has changed.
+ *
+ */
+
+class ViewSnapshot {
+	//遍历得到的view，顺序与遍历顺序一致
+	private final ArrayList<View> views;
+	//按具体类型分组的view在views中的位置
+	private Map<Class<?>, Positions> positionsByClass;
+	//按查询类型(包括子类)缓存的结果
+	private final Map<Class<?>, ArrayList<View>> viewsByType;
+	//按查询类型(不包括子类)缓存的结果
+	private final Map<Class<?>, ArrayList<View>> viewsByExactClass;
+	//按资源id分组的view，key为int，不装箱
+	private SparseArray<ArrayList<View>> viewsById;
+	//按tag分组的view，与id索引一起建立
+	private Map<Object, ArrayList<View>> viewsByTag;
+	//按具体类型和资源id分组的view，每种类型第一次查找时建立
+	private final Map<Class<?>, SparseArray<ArrayList<View>>> viewsByClassAndId;
+	//所有TextView文本的三元组索引
+	private TextIndex textIndex;
+	//在主线程中采集的view状态，只在主线程快照模式下存在
+	private final FlatViewSnapshot flatSnapshot;
+	//空结果，调用者不能修改
+	private static final ArrayList<View> NO_VIEWS = new ArrayList<View>(0);
+
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param views the views of the snapshot, in traversal order
+	 */
+
+	public ViewSnapshot(ArrayList<View> views) {
+		this(views, null);
+	}
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param views the views of the snapshot, in traversal order
+	 * @param flatSnapshot the state of the views captured on the main thread or {@code null}
+	 */
+
+	public ViewSnapshot(ArrayList<View> views, FlatViewSnapshot flatSnapshot) {
+		this.views = views;
+		this.flatSnapshot = flatSnapshot;
+		viewsByType = new HashMap<Class<?>, ArrayList<View>>();
+		viewsByExactClass = new HashMap<Class<?>, ArrayList<View>>();
+		viewsByClassAndId = new HashMap<Class<?>, SparseArray<ArrayList<View>>>();
+	}
+
+	/**
+	 * 返回快照中的所有view，调用者不能修改返回的列表
+	 * Returns all views of this snapshot. The returned list must not be modified.
+	 *
+	 * @return all views of this snapshot
+	 */
+
+	public ArrayList<View> getViews() {
+		return views;
+	}
+
+	/**
+	 * 返回在主线程中采集的view状态，不是主线程快照模式时返回null
+	 * Returns the state of the views captured on the main thread.
+	 *
+	 * @return the captured state or {@code null} if the snapshot was not taken on the main thread
+	 */
+
+	public FlatViewSnapshot getFlatSnapshot() {
+		return flatSnapshot;
+	}
+
+	/**
+	 * 判断view是否在屏幕上显示，主线程快照使用采集时的状态
+	 * Checks if the given view is shown. A snapshot captured on the main thread uses the captured visibility.
+	 *
+	 * @param view the view to check
+	 * @return true if the view is shown
+	 */
+
+	public boolean isShown(View view) {
+		return flatSnapshot != null ? flatSnapshot.isShown(view) : view.isShown();
+	}
+
+	/**
+	 * 检查TextView是否匹配，主线程快照使用采集的文本
+	 * Checks if the given text view matches. A snapshot captured on the main thread uses the captured text.
+	 *
+	 * @param textMatcher the matcher
+	 * @param view the view to check
+	 * @return true if the view matches
+	 */
+
+	public boolean matches(TextMatcher textMatcher, TextView view) {
+		return flatSnapshot != null ? flatSnapshot.matches(textMatcher, view) : textMatcher.matches(view);
+	}
+
+	/**
+	 * 返回指定类型的所有view，按遍历顺序排列，调用者不能修改返回的列表
+	 * Returns the views of the given class, in traversal order. The returned list must not be modified.
+	 *
+	 * @param classToFilterBy the class to filter by
+	 * @param includeSubclasses {@code true} if instances of subclasses should be included
+	 * @return the views of the given class
+	 */
+
+	public synchronized ArrayList<View> getViews(Class<?> classToFilterBy, boolean includeSubclasses) {
+		final Map<Class<?>, ArrayList<View>> cache = includeSubclasses ? viewsByType : viewsByExactClass;
+		ArrayList<View> filteredViews = cache.get(classToFilterBy);
+
+		if(filteredViews == null){
+			filteredViews = getViews(new Class<?>[] {classToFilterBy}, includeSubclasses);
+			cache.put(classToFilterBy, filteredViews);
+		}
+		return filteredViews;
+	}
+
+	/**
+	 * 返回属于任一给定类型的所有view，按遍历顺序排列，只用一次索引查找，不再重复遍历
+	 * Returns the views that are instances of any of the given classes, in traversal order.
+	 * Served from the class index, so asking for several classes costs no extra traversal.
+	 *
+	 * @param classes the classes to filter by
+	 * @param includeSubclasses {@code true} if instances of subclasses should be included
+	 * @return a new list with the views of the given classes
+	 */
+
+	public synchronized ArrayList<View> getViews(Class<?>[] classes, boolean includeSubclasses) {
+		final Map<Class<?>, Positions> index = getPositionsByClass();
+		final ArrayList<Positions> matchingPositions = new ArrayList<Positions>();
+		int numberOfMatches = 0;
+
+		//每个具体类型只判断一次isAssignableFrom，而不是每个view判断一次
+		for(Map.Entry<Class<?>, Positions> entry : index.entrySet()){
+			if(isMatchingClass(entry.getKey(), classes, includeSubclasses)){
+				matchingPositions.add(entry.getValue());
+				numberOfMatches += entry.getValue().size;
+			}
+		}
+		final ArrayList<View> filteredViews = new ArrayList<View>(numberOfMatches);
+
+		if(matchingPositions.size() == 1){
+			final Positions positions = matchingPositions.get(0);
+			for(int i = 0; i < positions.size; i++){
+				filteredViews.add(views.get(positions.values[i]));
+			}
+		}
+		else if(numberOfMatches > 0){
+			//多个具体类型时，合并位置并排序，保持遍历顺序
+			final int[] merged = new int[numberOfMatches];
+			int offset = 0;
+			for(Positions positions : matchingPositions){
+				System.arraycopy(positions.values, 0, merged, offset, positions.size);
+				offset += positions.size;
+			}
+			Arrays.sort(merged);
+			for(int i = 0; i < merged.length; i++){
+				filteredViews.add(views.get(merged[i]));
+			}
+		}
+		return filteredViews;
+	}
+
+	/**
+	 * 返回指定资源id的所有view，按遍历顺序排列，调用者不能修改返回的列表。
+	 * 索引随快照一起失效：任一窗口layout或draw时版本号增加，ViewFetcher会换成新的快照。
+	 * 返回前只检查同一个id下的view的实时id，不再检查整个快照；主线程快照使用采集的id，不读取实时状态
+	 * Returns the views with the given id, in traversal order. The returned list must not be modified.
+	 * The index lives as long as this snapshot, which is replaced as soon as the version of
+	 * one of its windows is bumped by a layout or a draw. Only the views found under the id
+	 * are checked against their live id before they are returned. A snapshot captured on the
+	 * main thread uses the captured ids and reads no live state.
+	 *
+	 * @param id the resource id of the views
+	 * @return the views with the given id
+	 */
+
+	public synchronized ArrayList<View> getViewsWithId(int id) {
+		if(viewsById == null){
+			buildIdAndTagIndexes();
+		}
+		final ArrayList<View> viewsWithId = viewsById.get(id);
+		if(viewsWithId == null){
+			return NO_VIEWS;
+		}
+		if(flatSnapshot != null){
+			return viewsWithId;
+		}
+		for(int i = 0; i < viewsWithId.size(); i++){
+			if(viewsWithId.get(i).getId() != id){
+				//有view在两帧之间改变了id，只返回仍然匹配的view
+				final ArrayList<View> stillWithId = new ArrayList<View>(viewsWithId.size());
+				for(View view : viewsWithId){
+					if(view.getId() == id){
+						stillWithId.add(view);
+					}
+				}
+				return stillWithId;
+			}
+		}
+		return viewsWithId;
+	}
+
+	/**
+	 * 返回指定tag的所有view，按遍历顺序排列，调用者不能修改返回的列表。
+	 * 索引的失效方式与id索引相同，查找时用给定tag的equals()比较，返回前检查实时的tag
+	 * Returns the views with the given tag, in traversal order. The returned list must not be
+	 * modified. The index is invalidated like the id index. Keys are compared with
+	 * {@code equals()} of the given tag, and the views found are checked against their live tag.
+	 *
+	 * @param tag the tag of the views
+	 * @return the views with the given tag
+	 */
+
+	public synchronized ArrayList<View> getViewsWithTag(Object tag) {
+		if(tag == null){
+			return NO_VIEWS;
+		}
+		if(viewsByTag == null){
+			buildIdAndTagIndexes();
+		}
+		final ArrayList<View> viewsWithTag = viewsByTag.get(tag);
+		if(viewsWithTag == null){
+			return NO_VIEWS;
+		}
+		if(flatSnapshot != null){
+			return viewsWithTag;
+		}
+		for(int i = 0; i < viewsWithTag.size(); i++){
+			if(!tag.equals(viewsWithTag.get(i).getTag())){
+				//有view在两帧之间改变了tag，只返回仍然匹配的view
+				final ArrayList<View> stillWithTag = new ArrayList<View>(viewsWithTag.size());
+				for(View view : viewsWithTag){
+					if(tag.equals(view.getTag())){
+						stillWithTag.add(view);
+					}
+				}
+				return stillWithTag;
+			}
+		}
+		return viewsWithTag;
+	}
+
+	/**
+	 * 遍历一次快照同时建立id索引和tag索引，id不装箱
+	 * Builds the id index and the tag index with one pass over the snapshot. Ids are not boxed.
+	 * The ids and tags captured on the main thread are used if there are any.
+	 */
+
+	private void buildIdAndTagIndexes() {
+		viewsById = new SparseArray<ArrayList<View>>();
+		viewsByTag = new HashMap<Object, ArrayList<View>>();
+		for(int i = 0; i < views.size(); i++){
+			final View view = views.get(i);
+			if(view == null){
+				continue;
+			}
+			final int capturedIndex = flatSnapshot != null ? flatSnapshot.indexOf(view) : -1;
+			final int idOfView = capturedIndex >= 0 ? flatSnapshot.getId(capturedIndex) : view.getId();
+			ArrayList<View> viewsWithId = viewsById.get(idOfView);
+			if(viewsWithId == null){
+				viewsWithId = new ArrayList<View>(1);
+				viewsById.put(idOfView, viewsWithId);
+			}
+			viewsWithId.add(view);
+
+			final Object tagOfView = capturedIndex >= 0 ? flatSnapshot.getTag(capturedIndex) : view.getTag();
+			if(tagOfView != null){
+				ArrayList<View> viewsWithTag = viewsByTag.get(tagOfView);
+				if(viewsWithTag == null){
+					viewsWithTag = new ArrayList<View>(1);
+					viewsByTag.put(tagOfView, viewsWithTag);
+				}
+				viewsWithTag.add(view);
+			}
+		}
+	}
+
+	/**
+	 * 返回快照中所有TextView文本的三元组索引，第一次使用时建立
+	 * Returns the trigram index over the text of the TextViews of this snapshot. The index is
+	 * built on first use and then shared by every text query against this snapshot.
+	 *
+	 * @return the text index of this snapshot
+	 */
+
+	public synchronized TextIndex getTextIndex() {
+		if(textIndex == null){
+			textIndex = new TextIndex(getViews(TextView.class, true), flatSnapshot);
+		}
+		return textIndex;
+	}
+
+	/**
+	 * 返回具体类型和id都相同的所有view，按遍历顺序排列，调用者不能修改返回的列表。
+	 * 每种类型第一次查找时，只用该类型的view建立按id分组的索引
+	 * Returns the views of exactly the given class that have the given id, in traversal order.
+	 * The returned list must not be modified. The first lookup for a class indexes the views
+	 * of that class by id, so later lookups for the class are a single hash lookup.
+	 *
+	 * @param exactClass the concrete class of the views
+	 * @param id the resource id of the views
+	 * @return the views of the given class with the given id
+	 */
+
+	public synchronized ArrayList<View> getViewsWithClassAndId(Class<?> exactClass, int id) {
+		SparseArray<ArrayList<View>> viewsOfClassById = viewsByClassAndId.get(exactClass);
+
+		if(viewsOfClassById == null){
+			viewsOfClassById = new SparseArray<ArrayList<View>>();
+			for(View view : getViews(exactClass, false)){
+				final int capturedIndex = flatSnapshot != null ? flatSnapshot.indexOf(view) : -1;
+				final int idOfView = capturedIndex >= 0 ? flatSnapshot.getId(capturedIndex) : view.getId();
+				ArrayList<View> viewsWithId = viewsOfClassById.get(idOfView);
+				if(viewsWithId == null){
+					viewsWithId = new ArrayList<View>(1);
+					viewsOfClassById.put(idOfView, viewsWithId);
+				}
+				viewsWithId.add(view);
+			}
+			viewsByClassAndId.put(exactClass, viewsOfClassById);
+		}
+		final ArrayList<View> viewsWithClassAndId = viewsOfClassById.get(id);
+		return viewsWithClassAndId != null ? viewsWithClassAndId : NO_VIEWS;
+	}
+
+	/**
+	 * 判断具体类型是否匹配任一给定类型
+	 * Checks if a concrete class matches any of the given classes.
+	 *
+	 * @param concreteClass the concrete class of a view
+	 * @param classes the classes to filter by
+	 * @param includeSubclasses {@code true} if subclasses match
+	 * @return true if the concrete class matches
+	 */
+
+	private boolean isMatchingClass(Class<?> concreteClass, Class<?>[] classes, boolean includeSubclasses) {
+		for(Class<?> classToFilterBy : classes){
+			if(classToFilterBy == null){
+				continue;
+			}
+			if(includeSubclasses ? classToFilterBy.isAssignableFrom(concreteClass) : classToFilterBy == concreteClass){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 返回按具体类型分组的索引，第一次调用时遍历一次快照建立
+	 * Returns the index of view positions by concrete class. Built with one pass over the
+	 * snapshot the first time it is needed.
+	 *
+	 * @return the index of view positions by concrete class
+	 */
+
+	private Map<Class<?>, Positions> getPositionsByClass() {
+		if(positionsByClass == null){
+			positionsByClass = new HashMap<Class<?>, Positions>();
+			for(int i = 0; i < views.size(); i++){
+				final View view = views.get(i);
+				if(view == null){
+					continue;
+				}
+				Positions positions = positionsByClass.get(view.getClass());
+				if(positions == null){
+					positions = new Positions();
+					positionsByClass.put(view.getClass(), positions);
+				}
+				positions.add(i);
+			}
+		}
+		return positionsByClass;
+	}
+
+
+	/**
+	 * 可增长的int数组，用于存放view的位置，避免装箱
+	 * A growable array of view positions, avoids boxing.
+	 */
+
+	static class Positions {
+		int[] values = new int[8];
+		int size;
+
+		void add(int value) {
+			if(size == values.length){
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+}
@@ -0,0 +1,392 @@
+package com.robotium.solo;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import android.view.View;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+
+
+/**
+ * 按窗口缓存view树的遍历结果，由ViewTreeObserver的layout和draw回调标记失效
+ * Caches the result of a view tree traversal per window. A cached traversal is
+ * invalidated by the {@link ViewTreeObserver} global layout and pre draw callbacks
+ * of that window, so repeated queries between two frames reuse the last traversal.
+ *
+ */
+
+class ViewSnapshotCache {
+	//ViewRootImpl中标记是否有待执行的traversal的字段名
+	private static final String TRAVERSAL_SCHEDULED_FIELD = "mTraversalScheduled";
+	//ViewRootImpl的mTraversalScheduled字段，只解析一次
+	private static Field traversalScheduledField;
+	//是否已经尝试解析过mTraversalScheduled字段
+	private static boolean traversalScheduledFieldResolved;
+	//以窗口根view为key的快照
+	private final Map<View, WindowSnapshot> snapshots;
+	//用于通知等待中的线程窗口发生了变化
+	private final Sleeper sleeper;
+
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param sleeper the {@code Sleeper} that is signalled when a window changes
+	 */
+
+	public ViewSnapshotCache(Sleeper sleeper) {
+		this.sleeper = sleeper;
+		snapshots = new HashMap<View, WindowSnapshot>();
+	}
+
+	/**
+	 * 返回给定窗口的快照，不存在则新建并注册ViewTreeObserver回调
+	 * Returns the snapshot of the given window. A new snapshot is created and registered
+	 * with the {@code ViewTreeObserver} of the window if none exists.
+	 *
+	 * @param window the root view of the window
+	 * @return the snapshot of the given window
+	 */
+
+	public synchronized WindowSnapshot getSnapshot(View window) {
+		WindowSnapshot snapshot = snapshots.get(window);
+
+		if(snapshot == null){
+			snapshot = new WindowSnapshot(window, sleeper);
+			snapshots.put(window, snapshot);
+		}
+		snapshot.registerIfNeeded();
+		return snapshot;
+	}
+
+	/**
+	 * 只保留给定窗口的快照，其余的快照释放并注销回调
+	 * Releases the snapshots of all windows that are not part of the given windows.
+	 *
+	 * @param windows the windows currently shown on the screen
+	 */
+
+	public synchronized void retainWindows(View[] windows) {
+		Iterator<Map.Entry<View, WindowSnapshot>> iterator = snapshots.entrySet().iterator();
+
+		while(iterator.hasNext()){
+			Map.Entry<View, WindowSnapshot> entry = iterator.next();
+			if(!contains(windows, entry.getKey())){
+				entry.getValue().release();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * 判断views中是否包含指定view，按引用比较
+	 * Checks if the given view is part of the given views, compared by identity.
+	 *
+	 * @param views the views to check
+	 * @param view the view to look for
+	 * @return true if the view is part of the views
+	 */
+
+	private boolean contains(View[] views, View view) {
+		if(views == null){
+			return false;
+		}
+		for(int i = 0; i < views.length; i++){
+			if(views[i] == view){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 判断窗口是否有待执行的layout或者draw，例如刚调用了invalidate()或者scrollBy()
+	 * Returns true if the window of the given root view has a traversal scheduled, e.g. right
+	 * after invalidate() or scrollBy() has been called and before the next frame is drawn.
+	 *
+	 * @param window the root view of the window
+	 * @return true if a traversal is scheduled or if it can not be determined
+	 */
+
+	private static boolean isTraversalScheduled(View window) {
+		final ViewParent viewRoot = window.getParent();
+
+		if(viewRoot == null){
+			return false;
+		}
+		final Field field = getTraversalScheduledField(viewRoot.getClass());
+
+		if(field == null){
+			return false;
+		}
+		try {
+			return field.getBoolean(viewRoot);
+		} catch (Exception ignored) {
+			return true;
+		}
+	}
+
+	/**
+	 * 解析ViewRootImpl的mTraversalScheduled字段，只解析一次
+	 * Resolves the mTraversalScheduled field of the ViewRootImpl class once.
+	 *
+	 * @param viewRootClass the class of the ViewRootImpl
+	 * @return the field or null if it is not available on this platform
+	 */
+
+	private static synchronized Field getTraversalScheduledField(Class<?> viewRootClass) {
+		if(!traversalScheduledFieldResolved){
+			traversalScheduledFieldResolved = true;
+			try {
+				traversalScheduledField = viewRootClass.getDeclaredField(TRAVERSAL_SCHEDULED_FIELD);
+				traversalScheduledField.setAccessible(true);
+			} catch (Exception ignored) {
+				traversalScheduledField = null;
+			}
+		}
+		return traversalScheduledField;
+	}
+
+
+	/**
+	 * 单个窗口的快照，保存该窗口最近一次遍历得到的views
+	 * The snapshot of a single window. Holds the views of the last traversal of the window
+	 * until the window is laid out or drawn again.
+	 *
+	 */
+
+	static class WindowSnapshot implements ViewTreeObserver.OnGlobalLayoutListener, ViewTreeObserver.OnPreDrawListener {
+		//窗口根view
+		private final View window;
+		//窗口变化时通知
+		private final Sleeper sleeper;
+		//每次layout或者draw时加1
+		private volatile int version;
+		//回调是否已在主线程注册
+		private volatile boolean registered;
+		//回调是否已经提交到主线程等待注册
+		private boolean registrationPending;
+		//注册了回调的ViewTreeObserver
+		private ViewTreeObserver observer;
+		//所有view的遍历结果及其版本
+		private ArrayList<View> allViews;
+		private int allViewsVersion;
+		//可见view的遍历结果及其版本
+		private ArrayList<View> visibleViews;
+		private int visibleViewsVersion;
+
+		/**
+		 * Constructs this object.
+		 *
+		 * @param window the root view of the window
+		 * @param sleeper the {@code Sleeper} to signal when the window changes
+		 */
+
+		WindowSnapshot(View window, Sleeper sleeper) {
+			this.window = window;
+			this.sleeper = sleeper;
+		}
+
+		/**
+		 * 返回当前版本号，遍历前调用，遍历结果用该版本号保存
+		 * Returns the current version. Should be read before a traversal is started and then
+		 * handed to {@link #setViews(boolean, ArrayList, int)} together with the result.
+		 *
+		 * @return the current version
+		 */
+
+		public int getVersion() {
+			return version;
+		}
+
+		/**
+		 * 判断窗口自给定版本以来是否没有变化
+		 * Returns true if the window has not been laid out or drawn since the given version.
+		 *
+		 * @param versionAtStart the version read before the window was captured
+		 * @return true if the window has not changed
+		 */
+
+		public synchronized boolean isCurrent(int versionAtStart) {
+			return isValid() && version == versionAtStart;
+		}
+
+		/**
+		 * 返回缓存的views，如果缓存已失效则返回null
+		 * Returns the cached views or {@code null} if they are stale.
+		 *
+		 * @param onlySufficientlyVisible if the sufficiently visible views should be returned
+		 * @return the cached views or {@code null} if a new traversal is needed
+		 */
+
+		public synchronized ArrayList<View> getViews(boolean onlySufficientlyVisible) {
+			if(!isValid()){
+				return null;
+			}
+			if(onlySufficientlyVisible){
+				return visibleViewsVersion == version ? visibleViews : null;
+			}
+			return allViewsVersion == version ? allViews : null;
+		}
+
+		/**
+		 * 保存一次遍历的结果
+		 * Stores the result of a traversal.
+		 *
+		 * @param onlySufficientlyVisible if the views are the sufficiently visible views
+		 * @param views the views found by the traversal
+		 * @param versionAtStart the version read before the traversal was started
+		 */
+
+		public synchronized void setViews(boolean onlySufficientlyVisible, ArrayList<View> views, int versionAtStart) {
+			if(onlySufficientlyVisible){
+				visibleViews = views;
+				visibleViewsVersion = versionAtStart;
+			}
+			else{
+				allViews = views;
+				allViewsVersion = versionAtStart;
+			}
+		}
+
+		/**
+		 * 标记快照失效
+		 * Marks this snapshot as stale.
+		 */
+
+		public void invalidate() {
+			version++;
+		}
+
+		/**
+		 * Called on the main thread when the window has been laid out.
+		 */
+
+		public void onGlobalLayout() {
+			invalidate();
+			sleeper.signalChange();
+		}
+
+		/**
+		 * Called on the main thread before the window is drawn.
+		 */
+
+		public boolean onPreDraw() {
+			invalidate();
+			sleeper.signalChange();
+			return true;
+		}
+
+		/**
+		 * 判断缓存是否可用：回调已注册，ViewTreeObserver未变化，且没有待执行的traversal
+		 * Returns true if the callbacks are registered with the live ViewTreeObserver of the
+		 * window and no traversal is pending.
+		 *
+		 * @return true if the cached views can be used
+		 */
+
+		private boolean isValid() {
+			if(!registered){
+				return false;
+			}
+			if(!isObserverAlive()){
+				registered = false;
+				return false;
+			}
+			return !isTraversalScheduled(window);
+		}
+
+		/**
+		 * 判断注册了回调的ViewTreeObserver是否仍是窗口当前使用的
+		 * Returns true if the ViewTreeObserver holding the callbacks is still the live one of the window.
+		 *
+		 * @return true if the ViewTreeObserver is alive
+		 */
+
+		private boolean isObserverAlive() {
+			return observer != null && observer.isAlive() && window.getViewTreeObserver() == observer;
+		}
+
+		/**
+		 * 如果回调未注册，则提交到主线程注册
+		 * Posts the registration of the callbacks to the main thread if they are not registered.
+		 */
+
+		synchronized void registerIfNeeded() {
+			if(registered && !isObserverAlive()){
+				registered = false;
+			}
+			if(registered || registrationPending){
+				return;
+			}
+			registrationPending = true;
+			window.post(new Runnable() {
+				public void run() {
+					register();
+				}
+			});
+		}
+
+		/**
+		 * 在主线程中注册回调
+		 * Registers the callbacks. Runs on the main thread.
+		 */
+
+		private void register() {
+			synchronized (this) {
+				registrationPending = false;
+				if(observer != null && observer.isAlive()){
+					removeListeners(observer);
+				}
+				observer = window.getViewTreeObserver();
+				if(observer == null || !observer.isAlive()){
+					return;
+				}
+				observer.addOnGlobalLayoutListener(this);
+				observer.addOnPreDrawListener(this);
+				invalidate();
+				registered = true;
+			}
+		}
+
+		/**
+		 * 释放缓存的views，并在主线程中注销回调
+		 * Releases the cached views and removes the callbacks on the main thread.
+		 */
+
+		synchronized void release() {
+			allViews = null;
+			visibleViews = null;
+			registered = false;
+			final ViewTreeObserver observerToRelease = observer;
+			observer = null;
+			if(observerToRelease != null){
+				window.post(new Runnable() {
+					public void run() {
+						if(observerToRelease.isAlive()){
+							removeListeners(observerToRelease);
+						}
+					}
+				});
+			}
+		}
+
+		/**
+		 * 从指定ViewTreeObserver中注销回调
+		 * Removes the callbacks from the given ViewTreeObserver.
+		 *
+		 * @param viewTreeObserver the ViewTreeObserver to remove the callbacks from
+		 */
+
+		@SuppressWarnings("deprecation")
+		private void removeListeners(ViewTreeObserver viewTreeObserver) {
+			try{
+				viewTreeObserver.removeGlobalOnLayoutListener(this);
+				viewTreeObserver.removeOnPreDrawListener(this);
+			}catch(Exception ignored){}
+		}
+	}
+}
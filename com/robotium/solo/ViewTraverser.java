@@ -0,0 +1,225 @@
+package com.robotium.solo;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+import android.widget.AbsListView;
+import android.widget.ScrollView;
+
+
+/**
+ * 非递归的view树遍历工具类，使用可复用的显式栈，遍历过程中不产生垃圾对象
+ * Walks view hierarchies iteratively using an explicit, reusable stack. Views are handed to a
+ * {@link Visitor} in the same depth-first pre-order as a recursive walk would produce, but a
+ * full walk neither grows the Java stack nor allocates once the stack has reached the depth
+ * of the hierarchy. Instances are not thread safe.
+ *
+ */
+
+class ViewTraverser {
+	//栈的初始容量
+	private static final int INITIAL_CAPACITY = 64;
+	//待访问的view
+	private View[] stack;
+	//每个待访问view继承的最近滚动/列表容器的上边界和下边界(屏幕坐标)
+	private int[] clipTops;
+	private int[] clipBottoms;
+	//栈中元素的数量
+	private int size;
+	//是否正在遍历，用于检测重入
+	private boolean traversing;
+	//坐标缓冲区
+	private final int[] xy = new int[2];
+
+
+	/**
+	 * 遍历时对每个view的回调
+	 * Receives the views of a traversal.
+	 */
+
+	interface Visitor {
+
+		/**
+		 * 访问一个view，返回false则立即停止遍历
+		 * Visits a view.
+		 *
+		 * @param view the view to visit, never {@code null}
+		 * @return {@code true} if the traversal should continue and {@code false} if it should stop
+		 */
+		public boolean visit(View view);
+	}
+
+	/**
+	 * Constructs this object.
+	 */
+
+	public ViewTraverser() {
+		stack = new View[INITIAL_CAPACITY];
+		clipTops = new int[INITIAL_CAPACITY];
+		clipBottoms = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * 判断view是否是滚动或者列表容器(AbsListView, ScrollView, WebView)
+	 * Returns true if the given view is a scroll or list container, i.e. an
+	 * {@code AbsListView}, {@code ScrollView} or {@code WebView}.
+	 *
+	 * @param view the view to check
+	 * @return true if the view is a scroll or list container
+	 */
+
+	public static boolean isScrollOrListContainer(View view) {
+		return view instanceof AbsListView || view instanceof ScrollView || view instanceof WebView;
+	}
+
+	/**
+	 * 按深度优先前序遍历给定viewGroup的所有子view(不包括viewGroup自己)
+	 * Visits all descendants of the given {@code ViewGroup}, not including the {@code ViewGroup}
+	 * itself, in depth-first pre-order.
+	 *
+	 * @param viewGroup the {@code ViewGroup} whose descendants should be visited
+	 * @param visitor the visitor to hand the views to
+	 * @return {@code true} if all views were visited and {@code false} if the visitor stopped the traversal
+	 */
+
+	public boolean traverse(ViewGroup viewGroup, Visitor visitor) {
+		return walk(viewGroup, false, 0, 0, visitor);
+	}
+
+	/**
+	 * 按深度优先前序遍历给定viewGroup的所有子view，只把可见的view交给访问者
+	 * 可见性自顶向下计算：每个view继承最近的滚动/列表容器的边界，不再为每个view向上查找父容器
+	 * Visits the sufficiently shown descendants of the given {@code ViewGroup} in depth-first
+	 * pre-order. A view is sufficiently shown if its vertical center lies within the bounds of
+	 * its nearest scroll or list container, or within the display if it has none. The bounds are
+	 * carried down the tree, so each view is checked without walking up its parents.
+	 *
+	 * @param viewGroup the {@code ViewGroup} whose descendants should be visited
+	 * @param clipTop the top of the clip bounds that apply to the {@code ViewGroup}, in screen coordinates
+	 * @param clipBottom the bottom of the clip bounds that apply to the {@code ViewGroup}, in screen coordinates
+	 * @param visitor the visitor to hand the sufficiently shown views to
+	 * @return {@code true} if all views were visited and {@code false} if the visitor stopped the traversal
+	 */
+
+	public boolean traverseSufficientlyShown(ViewGroup viewGroup, int clipTop, int clipBottom, Visitor visitor) {
+		return walk(viewGroup, true, clipTop, clipBottom, visitor);
+	}
+
+	/**
+	 * 遍历的实现
+	 * Performs the traversal.
+	 *
+	 * @param viewGroup the {@code ViewGroup} whose descendants should be visited
+	 * @param onlySufficientlyShown if only sufficiently shown views should be visited
+	 * @param clipTop the top of the clip bounds of the {@code ViewGroup}
+	 * @param clipBottom the bottom of the clip bounds of the {@code ViewGroup}
+	 * @param visitor the visitor
+	 * @return {@code true} if all views were visited and {@code false} if the visitor stopped the traversal
+	 */
+
+	private boolean walk(ViewGroup viewGroup, boolean onlySufficientlyShown, int clipTop, int clipBottom, Visitor visitor) {
+		if(viewGroup == null){
+			return true;
+		}
+		//访问者在回调中再次发起遍历时，使用新的实例，避免破坏当前的栈
+		if(traversing){
+			return new ViewTraverser().walk(viewGroup, onlySufficientlyShown, clipTop, clipBottom, visitor);
+		}
+		traversing = true;
+		try{
+			size = 0;
+			pushChildren(viewGroup, clipTop, clipBottom);
+
+			while(size > 0){
+				final View view = stack[--size];
+				stack[size] = null;
+				int top = clipTops[size];
+				int bottom = clipBottoms[size];
+
+				if(onlySufficientlyShown){
+					view.getLocationOnScreen(xy);
+					final int height = view.getHeight();
+					//滚动/列表容器自己的边界就是其子view的边界
+					if(isScrollOrListContainer(view)){
+						top = xy[1];
+						bottom = xy[1] + height;
+					}
+					final float centerY = xy[1] + (height / 2.0f);
+
+					if(centerY <= bottom && centerY >= top && !visitor.visit(view)){
+						return false;
+					}
+				}
+				else if(!visitor.visit(view)){
+					return false;
+				}
+				if(view instanceof ViewGroup){
+					pushChildren((ViewGroup) view, top, bottom);
+				}
+			}
+			return true;
+		}finally{
+			clear();
+			traversing = false;
+		}
+	}
+
+	/**
+	 * 把viewGroup的子view倒序压栈，保证出栈顺序和子view顺序一致
+	 * Pushes the children of the given {@code ViewGroup} in reverse order, so that they are
+	 * popped in child order.
+	 *
+	 * @param viewGroup the {@code ViewGroup} whose children should be pushed
+	 * @param clipTop the top of the clip bounds the children inherit
+	 * @param clipBottom the bottom of the clip bounds the children inherit
+	 */
+
+	private void pushChildren(ViewGroup viewGroup, int clipTop, int clipBottom) {
+		final int childCount = viewGroup.getChildCount();
+		ensureCapacity(size + childCount);
+
+		for(int i = childCount - 1; i >= 0; i--){
+			final View child = viewGroup.getChildAt(i);
+			if(child != null){
+				stack[size] = child;
+				clipTops[size] = clipTop;
+				clipBottoms[size] = clipBottom;
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * 确保栈的容量足够，不够时扩容为两倍
+	 * Grows the stack if it can not hold the given number of views.
+	 *
+	 * @param capacity the number of views the stack needs to hold
+	 */
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > stack.length){
+			final int newCapacity = Math.max(capacity, stack.length * 2);
+			final View[] newStack = new View[newCapacity];
+			final int[] newClipTops = new int[newCapacity];
+			final int[] newClipBottoms = new int[newCapacity];
+			System.arraycopy(stack, 0, newStack, 0, size);
+			System.arraycopy(clipTops, 0, newClipTops, 0, size);
+			System.arraycopy(clipBottoms, 0, newClipBottoms, 0, size);
+			stack = newStack;
+			clipTops = newClipTops;
+			clipBottoms = newClipBottoms;
+		}
+	}
+
+	/**
+	 * 清空栈中剩余的引用，避免持有已经关闭的窗口
+	 * Clears the references left on the stack so that closed windows can be collected.
+	 */
+
+	private void clear() {
+		for(int i = 0; i < size; i++){
+			stack[i] = null;
+		}
+		size = 0;
+	}
+}
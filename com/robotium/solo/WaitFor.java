@@ -0,0 +1,271 @@
+package com.robotium.solo;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * 与waitForAny和waitForAll一起使用的等待条件，所有条件在同一次view树快照上判断
+ * Used in conjunction with {@link Solo#waitForAny(int, WaitFor...)} and {@link Solo#waitForAll(int, WaitFor...)}.
+ * Examples are WaitFor.text(String regex) and WaitFor.activity(String name). All conditions of
+ * a wait are checked against the same view tree snapshot, so waiting for several outcomes costs
+ * no more traversals than waiting for one.
+ *
+ */
+
+public abstract class WaitFor {
+
+	/**
+	 * 自定义的判定条件
+	 * Waits for a condition to be satisfied.
+	 *
+	 * @param condition the condition to wait for
+	 * @return the WaitFor object
+	 */
+
+	public static WaitFor condition(final Condition condition) {
+		return new ConditionSatisfied(condition);
+
+	}
+
+	/**
+	 * 指定类型的view出现
+	 * Waits for a {@code View} of the given class to be shown.
+	 *
+	 * @param viewClass the {@code View} class to wait for
+	 * @return the WaitFor object
+	 */
+
+	public static WaitFor view(final Class<? extends View> viewClass) {
+		return new ViewShown(viewClass);
+
+	}
+
+	/**
+	 * 指定id的view出现
+	 * Waits for a {@code View} with the given id to be shown.
+	 *
+	 * @param id the R.id of the {@code View} to wait for
+	 * @return the WaitFor object
+	 */
+
+	public static WaitFor id(final int id) {
+		return new IdShown(id);
+
+	}
+
+	/**
+	 * 指定文本出现
+	 * Waits for a text to be shown.
+	 *
+	 * @param text the text to wait for. The parameter will be interpreted as a regular expression
+	 * @return the WaitFor object
+	 */
+
+	public static WaitFor text(final String text) {
+		return new TextShown(text);
+
+	}
+
+	/**
+	 * 指定名字的Activity成为当前Activity
+	 * Waits for an {@code Activity} with the given name to become the current {@code Activity}.
+	 *
+	 * @param name the name of the {@code Activity} to wait for, e.g. {@code "MyActivity"}
+	 * @return the WaitFor object
+	 */
+
+	public static WaitFor activity(final String name) {
+		return new ActivityNamed(name);
+
+	}
+
+	/**
+	 * 指定类型的Activity成为当前Activity
+	 * Waits for an {@code Activity} of the given class to become the current {@code Activity}.
+	 *
+	 * @param activityClass the class of the {@code Activity} to wait for
+	 * @return the WaitFor object
+	 */
+
+	public static WaitFor activity(final Class<? extends Activity> activityClass) {
+		return new ActivityOfClass(activityClass);
+
+	}
+
+	/**
+	 * 在一次检查中判断条件是否满足
+	 * Checks if this condition is satisfied in the given state.
+	 *
+	 * @param state the state of the current check, shared by all conditions of a wait
+	 * @return true if the condition is satisfied
+	 */
+
+	abstract boolean isSatisfied(State state);
+
+
+	/**
+	 * 一次检查中所有条件共用的状态，view树快照和当前Activity只获取一次
+	 * The state of a single check, shared by all conditions. The view tree snapshot and the
+	 * current Activity are fetched at most once per check.
+	 */
+
+	static class State {
+		private final ViewFetcher viewFetcher;
+		private final ActivityUtils activityUtils;
+		private ViewSnapshot snapshot;
+		private Activity activity;
+		private boolean activityFetched;
+
+		State(ViewFetcher viewFetcher, ActivityUtils activityUtils) {
+			this.viewFetcher = viewFetcher;
+			this.activityUtils = activityUtils;
+		}
+
+		ViewSnapshot getSnapshot() {
+			if(snapshot == null){
+				snapshot = viewFetcher.getSnapshot(true);
+			}
+			return snapshot;
+		}
+
+		Activity getActivity() {
+			if(!activityFetched){
+				activity = activityUtils.getCurrentActivity(false);
+				activityFetched = true;
+			}
+			return activity;
+		}
+	}
+
+	static class ConditionSatisfied extends WaitFor {
+		private final Condition condition;
+
+		public ConditionSatisfied(Condition condition) {
+			this.condition = condition;
+		}
+
+		@Override
+		boolean isSatisfied(State state) {
+			return condition.isSatisfied();
+		}
+
+		@Override
+		public String toString() {
+			return "condition(" + condition + ")";
+		}
+	}
+
+	static class ViewShown extends WaitFor {
+		private final Class<? extends View> viewClass;
+
+		public ViewShown(Class<? extends View> viewClass) {
+			this.viewClass = viewClass;
+		}
+
+		@Override
+		boolean isSatisfied(State state) {
+			final ViewSnapshot snapshot = state.getSnapshot();
+			for(View view : snapshot.getViews(viewClass, true)){
+				if(snapshot.isShown(view)){
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "view(" + viewClass.getSimpleName() + ")";
+		}
+	}
+
+	static class IdShown extends WaitFor {
+		private final int id;
+
+		public IdShown(int id) {
+			this.id = id;
+		}
+
+		@Override
+		boolean isSatisfied(State state) {
+			final ViewSnapshot snapshot = state.getSnapshot();
+			for(View view : snapshot.getViewsWithId(id)){
+				if(snapshot.isShown(view)){
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "id(" + id + ")";
+		}
+	}
+
+	static class TextShown extends WaitFor {
+		private final String text;
+		private final TextMatcher textMatcher;
+
+		public TextShown(String text) {
+			this.text = text;
+			this.textMatcher = TextMatcher.compile(text);
+		}
+
+		@Override
+		boolean isSatisfied(State state) {
+			final ViewSnapshot snapshot = state.getSnapshot();
+			for(View view : snapshot.getViews(TextView.class, true)){
+				//与RobotiumUtils.getNumberOfMatches一样，检查文本、错误提示和空文本时的hint
+				if(snapshot.isShown(view) && snapshot.matches(textMatcher, (TextView) view)){
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "text(\"" + text + "\")";
+		}
+	}
+
+	static class ActivityNamed extends WaitFor {
+		private final String name;
+
+		public ActivityNamed(String name) {
+			this.name = name;
+		}
+
+		@Override
+		boolean isSatisfied(State state) {
+			final Activity activity = state.getActivity();
+			return activity != null && activity.getClass().getSimpleName().equals(name);
+		}
+
+		@Override
+		public String toString() {
+			return "activity(\"" + name + "\")";
+		}
+	}
+
+	static class ActivityOfClass extends WaitFor {
+		private final Class<? extends Activity> activityClass;
+
+		public ActivityOfClass(Class<? extends Activity> activityClass) {
+			this.activityClass = activityClass;
+		}
+
+		@Override
+		boolean isSatisfied(State state) {
+			final Activity activity = state.getActivity();
+			return activity != null && activity.getClass().equals(activityClass);
+		}
+
+		@Override
+		public String toString() {
+			return "activity(" + activityClass.getSimpleName() + ")";
+		}
+	}
+}
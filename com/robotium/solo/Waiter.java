@@ -1,8 +1,5 @@
 package com.robotium.solo;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
@@ -40,6 +37,8 @@ class Waiter {
 	private final Sleeper sleeper;
 	//Android源码下的Instrumentation基类，时间发送器
 	private final Instrumentation instrumentation;
+	//持续读取logcat的读取器，每个Solo一个
+	private final LogcatReader logcatReader;
 
 
 	/**
@@ -59,7 +58,8 @@ class Waiter {
 		this.viewFetcher = viewFetcher;
 		this.searcher = searcher;
 		this.scroller = scroller;
-		this.sleeper = sleeper;		
+		this.sleeper = sleeper;
+		this.logcatReader = new LogcatReader();
 	}
 
 	/**
@@ -85,11 +85,21 @@ class Waiter {
 	 *
 	 */
 
-	public boolean waitForActivity(String name, int timeout){
+	public boolean waitForActivity(final String name, int timeout){
 		//通过isActivityMatching方法比较Activity名是否一致
 		if(isActivityMatching(activityUtils.getCurrentActivity(false, false), name)){
 			return true;
 		}
+		final ActivityRegistry activityRegistry = activityUtils.getActivityRegistry();
+		//由生命周期回调在Activity进入RESUMED状态时唤醒，不需要轮询和额外的ActivityMonitor
+		if(activityRegistry.isRegistered()){
+			return activityRegistry.waitForResumedActivity(new ActivityRegistry.ActivityFilter() {
+				public boolean matches(Activity activity) {
+					return isActivityMatching(activity, name);
+				}
+			}, timeout);
+		}
+		//不支持生命周期回调时(API 14以下)使用ActivityMonitor
 		
 		boolean foundActivity = false;
 		//Activity监视器
@@ -155,11 +165,21 @@ class Waiter {
 	 *
 	 */
 
-	public boolean waitForActivity(Class<? extends Activity> activityClass, int timeout){
+	public boolean waitForActivity(final Class<? extends Activity> activityClass, int timeout){
 		//先匹配给予的activity类和获取的当前Activity类是否一致，一致则返回true，即为找到
 		if(isActivityMatching(activityClass, activityUtils.getCurrentActivity(false, false))){
 			return true;
 		}
+		final ActivityRegistry activityRegistry = activityUtils.getActivityRegistry();
+		//由生命周期回调在Activity进入RESUMED状态时唤醒，不需要轮询和额外的ActivityMonitor
+		if(activityRegistry.isRegistered()){
+			return activityRegistry.waitForResumedActivity(new ActivityRegistry.ActivityFilter() {
+				public boolean matches(Activity activity) {
+					return isActivityMatching(activityClass, activity);
+				}
+			}, timeout);
+		}
+		//不支持生命周期回调时(API 14以下)使用ActivityMonitor
 		
 		//如果没找到，继续寻找
 		//定义找Activity的Boolean型变量，默认值false
@@ -287,17 +307,24 @@ class Waiter {
 		final long endTime = SystemClock.uptimeMillis() + timeout;
 		//设置view找到标识
 		boolean foundMatchingView;
+		//按以往等待该类操作的耗时自适应调整轮询间隔
+		final Sleeper.Poll poll = sleeper.startPoll("waitForView");
 		//在规定时间内循环，查找指定view类型的数量值是否和期望值相等
 		while (SystemClock.uptimeMillis() < endTime) {
-			sleeper.sleep();
+			//检查前记录界面变化次数，检查期间的变化不会被错过
+			final int changeCount = sleeper.getChangeCount();
 			//找到指定VeiwClas的view，并计算出非重复view数量值是否和预期index值相等
 			foundMatchingView =  searcher.searchFor(uniqueViews, viewClass, index);
 			//如果找到并相等，返回true
-			if(foundMatchingView)
+			if(foundMatchingView){
+				poll.done();
 				return true;
+			}
 			//如果支持滑动，滑动下拉刷新
 			if(scroll) 
 				scroller.scrollDown();
+			//界面变化时立即重新检查
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 		//时间到后，未找到返回false
 		return false;
@@ -317,13 +344,14 @@ class Waiter {
 	public <T extends View> boolean  waitForViews(boolean scrollMethod, Class<? extends T>... classes) {
 		//计算出超时时间
 		final long endTime = SystemClock.uptimeMillis() + Timeout.getSmallTimeout();
+		final Sleeper.Poll poll = sleeper.startPoll("waitForViews");
 		//在规定时间内循环
 		while (SystemClock.uptimeMillis() < endTime) {
-			//在给定的classes中，如果找到指定的view类型出现，则返回true
-			for (Class<? extends T> classToWaitFor : classes) {
-				if (waitForView(classToWaitFor, 0, false, false)) {
-					return true;
-				}
+			final int changeCount = sleeper.getChangeCount();
+			//在给定的classes中，如果找到指定的view类型出现，则返回true，所有类型只查询一次类型索引
+			if (!viewFetcher.removeInvisibleViews(viewFetcher.getCurrentViews(classes, true)).isEmpty()) {
+				poll.done();
+				return true;
 			}
 			//如果可以滚动，则将滚动条滚动到最底部
 			if(scrollMethod){
@@ -332,7 +360,7 @@ class Waiter {
 			else {
 				scroller.scrollDown();
 			}
-			sleeper.sleep();
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 		return false;
 	}
@@ -396,14 +424,16 @@ class Waiter {
 		//指定view非null判断
 		if(view == null)
 			return null;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForView(View)");
 		//在规定时间内循环
 		while (SystemClock.uptimeMillis() < endTime) {
+			final int changeCount = sleeper.getChangeCount();
 			//判断是否能寻找到匹配的指定view
 			final boolean foundAnyMatchingView = searcher.searchFor(view);
 			//如果view未出现,尝试5次以上后，找一个和view一样的view，返回
 			if(checkIsShown && foundAnyMatchingView && !view.isShown()){
-				//休息一下
-				sleeper.sleepMini();
+				//休息一下，界面变化时立即重新检查
+				sleeper.sleepMiniUntilChange(changeCount);
 				retry++;
 				//寻找一个和view相等的view
 				View identicalView = viewFetcher.getIdenticalView(view);
@@ -419,6 +449,7 @@ class Waiter {
 			}
 			//如果view出现，返回view
 			if (foundAnyMatchingView){
+				poll.done();
 				return view;
 			}
 			//如果支持屏幕滚动，滚动屏幕
@@ -426,7 +457,7 @@ class Waiter {
 				scroller.scrollDown();
 			}
 
-			sleeper.sleep();
+			poll.sleepUntilChange(changeCount, endTime);
 
 		}
 		return view;
@@ -465,25 +496,24 @@ class Waiter {
 		Set<View> uniqueViewsMatchingId = new HashSet<View>();
 		//计算超时时间
 		long endTime = SystemClock.uptimeMillis() + timeout;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForView(id)");
 		//在规定时间内循环
 		while (SystemClock.uptimeMillis() <= endTime) {
-			sleeper.sleep();
-			// 遍历当前所有的view
-			for (View view : viewFetcher.getAllViews(false)) {
-				// 检查id,符合条件加入views缓存
-				Integer idOfView = Integer.valueOf(view.getId());
-				
-				if (idOfView.equals(id)) {
-					uniqueViewsMatchingId.add(view);
-					// 已找到需求的index,返回当前的view
-					if(uniqueViewsMatchingId.size() > index) {
-						return view;
-					}
+			final int changeCount = sleeper.getChangeCount();
+			// 通过id索引直接获取符合条件的view，先检查再休眠，view出现后立即返回
+			for (View view : viewFetcher.getViewsWithId(id, false)) {
+				uniqueViewsMatchingId.add(view);
+				// 已找到需求的index,返回当前的view
+				if(uniqueViewsMatchingId.size() > index) {
+					poll.done();
+					return view;
 				}
 			}
 			// 如果设置了拖动，调用拖动方法刷新控件内容
 			if(scroll) 
 				scroller.scrollDown();
+
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 		// 未满足条件，返回false
 		return null;
@@ -525,24 +555,25 @@ class Waiter {
 		//构建一个存储非重复view的容器
 		Set<View> uniqueViewsMatchingId = new HashSet<View>();
 		long endTime = SystemClock.uptimeMillis() + timeout;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForView(tag)");
 		//规定时间内，循环
 		while (SystemClock.uptimeMillis() <= endTime) {
-			sleeper.sleep();
-			//遍历所有view
-			for (View view : viewFetcher.getAllViews(false)) {
-				// 检查tag,符合条件加入views缓存
-				if (tag.equals(view.getTag())) {
-					uniqueViewsMatchingId.add(view);
-					// 已找到需求的index,返回当前的view
-					if(uniqueViewsMatchingId.size() > index) {
-						return view;
-					}
+			final int changeCount = sleeper.getChangeCount();
+			//从快照中获取符合条件的view，先检查再休眠，view出现后立即返回
+			for (View view : viewFetcher.getViewsWithTag(tag, false)) {
+				uniqueViewsMatchingId.add(view);
+				// 已找到需求的index,返回当前的view
+				if(uniqueViewsMatchingId.size() > index) {
+					poll.done();
+					return view;
 				}
 			}
 			//如果支持滑动，滑动屏幕刷新view内容
 			if(scroll) {
 				scroller.scrollDown();
 			}
+
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 		//如果没有符合条件的，返回null值
 		return null;
@@ -561,6 +592,7 @@ class Waiter {
 	public WebElement waitForWebElement(final By by, int minimumNumberOfMatches, int timeout, boolean scroll){
 		//计算超时时间
 		final long endTime = SystemClock.uptimeMillis() + timeout;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForWebElement");
 		//进入循环模式
 		while (true) {	
 			//判断是否超时
@@ -571,16 +603,20 @@ class Waiter {
 				searcher.logMatchesFound(by.getValue());
 				return null;
 			}
-			sleeper.sleep();
+			final int changeCount = sleeper.getChangeCount();
 			//查找到指定id的web元素
 			WebElement webElementToReturn = searcher.searchForWebElement(by, minimumNumberOfMatches); 
 			//非null值，则返回
-			if(webElementToReturn != null)
+			if(webElementToReturn != null){
+				poll.done();
 				return webElementToReturn;
+			}
 
 			if(scroll) {
 				scroller.scrollDown();
 			}
+			//界面变化时立即重新检查
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 	}
 
@@ -596,18 +632,85 @@ class Waiter {
 	public boolean waitForCondition(Condition condition, int timeout){
 		//计算出超时时间
 		final long endTime = SystemClock.uptimeMillis() + timeout;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForCondition");
 		//无线循环，直到规定时间到
 		while (true) {
 			final boolean timedOut = SystemClock.uptimeMillis() > endTime;
 			if (timedOut){
 				return false;
 			}
-			
-			sleeper.sleep();
+			final int changeCount = sleeper.getChangeCount();
 			//如果条件满足，返回true
 			if (condition.isSatisfied()){
+				poll.done();
+				return true;
+			}
+			//界面变化时立即重新检查
+			poll.sleepUntilChange(changeCount, endTime);
+		}
+	}
+
+	/**
+	 * 等待任一条件满足，返回满足的条件的位置，每次检查所有条件共用同一次view树快照
+	 * Waits for any of the given conditions to be satisfied. All conditions are checked
+	 * against the same view tree snapshot on each check.
+	 *
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @param conditions the conditions to wait for
+	 * @return the index of the first satisfied condition, or {@code -1} if none is satisfied before the timeout
+	 */
+
+	public int waitForAny(int timeout, WaitFor... conditions){
+		final long endTime = SystemClock.uptimeMillis() + timeout;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForAny");
+
+		while (true) {
+			final int changeCount = sleeper.getChangeCount();
+			final WaitFor.State state = new WaitFor.State(viewFetcher, activityUtils);
+			for(int i = 0; i < conditions.length; i++){
+				if(conditions[i].isSatisfied(state)){
+					poll.done();
+					return i;
+				}
+			}
+			if(SystemClock.uptimeMillis() > endTime){
+				return -1;
+			}
+			//界面变化时立即重新检查
+			poll.sleepUntilChange(changeCount, endTime);
+		}
+	}
+
+	/**
+	 * 等待所有条件同时满足，每次检查所有条件共用同一次view树快照
+	 * Waits for all of the given conditions to be satisfied at the same time. All conditions
+	 * are checked against the same view tree snapshot on each check.
+	 *
+	 * @param timeout the amount of time in milliseconds to wait
+	 * @param conditions the conditions to wait for
+	 * @return {@code true} if all conditions are satisfied and {@code false} if they are not satisfied before the timeout
+	 */
+
+	public boolean waitForAll(int timeout, WaitFor... conditions){
+		final long endTime = SystemClock.uptimeMillis() + timeout;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForAll");
+
+		while (true) {
+			final int changeCount = sleeper.getChangeCount();
+			final WaitFor.State state = new WaitFor.State(viewFetcher, activityUtils);
+			boolean allSatisfied = true;
+			//有一个条件不满足时，其余条件本次不再检查
+			for(int i = 0; i < conditions.length && allSatisfied; i++){
+				allSatisfied = conditions[i].isSatisfied(state);
+			}
+			if(allSatisfied){
+				poll.done();
 				return true;
 			}
+			if(SystemClock.uptimeMillis() > endTime){
+				return false;
+			}
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 	}
 
@@ -651,7 +754,7 @@ class Waiter {
 	 */
 
 	public TextView waitForText(String text, int expectedMinimumNumberOfMatches, long timeout, boolean scroll) {
-		return waitForText(TextView.class, text, expectedMinimumNumberOfMatches, timeout, scroll, false, true);	
+		return waitForText(TextView.class, text, expectedMinimumNumberOfMatches, timeout, scroll, false);	
 	}
 
 	/**
@@ -667,25 +770,24 @@ class Waiter {
 	 */
 
 	public <T extends TextView> T waitForText(Class<T> classToFilterBy, String text, int expectedMinimumNumberOfMatches, long timeout, boolean scroll) {
-		return waitForText(classToFilterBy, text, expectedMinimumNumberOfMatches, timeout, scroll, false, true);	
+		return waitForText(classToFilterBy, text, expectedMinimumNumberOfMatches, timeout, scroll, false);	
 	}
 
 	/**
 	 * 获取指定text的第expectedMinimumNumberOfMatches个TextView,可指定超时时间，是否需要拖动
-	 * 是否过滤非可见view,是否需要超时后立马退出
-	 * Waits for a text to be shown.
+	 * 是否过滤非可见view，查找和滚动总是在超时后停止
+	 * Waits for a text to be shown. The search and its scrolling always stop when the timeout expires.
 	 *
 	 * @param text the text that needs to be shown, specified as a regular expression.
 	 * @param expectedMinimumNumberOfMatches the minimum number of matches of text that must be shown. {@code 0} means any number of matches
 	 * @param timeout the amount of time in milliseconds to wait
 	 * @param scroll {@code true} if scrolling should be performed
 	 * @param onlyVisible {@code true} if only visible text views should be waited for
-	 * @param hardStoppage {@code true} if search is to be stopped when timeout expires
 	 * @return {@code true} if text is found and {@code false} if it is not found before the timeout
 	 */
 
-	public TextView waitForText(String text, int expectedMinimumNumberOfMatches, long timeout, boolean scroll, boolean onlyVisible, boolean hardStoppage) {
-		return waitForText(TextView.class, text, expectedMinimumNumberOfMatches, timeout, scroll, onlyVisible, hardStoppage);
+	public TextView waitForText(String text, int expectedMinimumNumberOfMatches, long timeout, boolean scroll, boolean onlyVisible) {
+		return waitForText(TextView.class, text, expectedMinimumNumberOfMatches, timeout, scroll, onlyVisible);
 	}
 
 	/**
@@ -696,8 +798,7 @@ class Waiter {
 	 * timeout                          超时时间，单位 ms
 	 * scroll                           true对于可拖动控件拖动刷新，false 不拖动刷新
 	 * onlyVisible                      true 过滤掉非可见的,false  不做过滤
-	 * hardStoppage                     true 等所有操作完成后返回,false 超时后强制停止相关操作，立即返回
-	 * Waits for a text to be shown.
+	 * Waits for a text to be shown. The search and its scrolling always stop when the timeout expires.
 	 *
 	 * @param classToFilterBy the class to filter by
 	 * @param text the text that needs to be shown, specified as a regular expression.
@@ -705,31 +806,45 @@ class Waiter {
 	 * @param timeout the amount of time in milliseconds to wait
 	 * @param scroll {@code true} if scrolling should be performed
 	 * @param onlyVisible {@code true} if only visible text views should be waited for
-	 * @param hardStoppage {@code true} if search is to be stopped when timeout expires
 	 * @return {@code true} if text is found and {@code false} if it is not found before the timeout
 	 */
 
-	public <T extends TextView> T waitForText(Class<T> classToFilterBy, String text, int expectedMinimumNumberOfMatches, long timeout, boolean scroll, boolean onlyVisible, boolean hardStoppage) {
-		//计算出超时的时间
-		final long endTime = SystemClock.uptimeMillis() + timeout;
+	public <T extends TextView> T waitForText(Class<T> classToFilterBy, String text, int expectedMinimumNumberOfMatches, long timeout, boolean scroll, boolean onlyVisible) {
+		return waitForText(classToFilterBy, text, expectedMinimumNumberOfMatches, Deadline.after(timeout), scroll, onlyVisible);
+	}
+
+	/**
+	 * 在截止时间之前等待指定text的TextView出现，查找和滚动都从剩余时间中消耗，到期后立即返回
+	 * Waits for a text to be shown before the given deadline. The nested search and scrolling
+	 * consume the same deadline, so the wait ends at the deadline even while scrolling.
+	 *
+	 * @param classToFilterBy the class to filter by
+	 * @param text the text that needs to be shown, specified as a regular expression.
+	 * @param expectedMinimumNumberOfMatches the minimum number of matches of text that must be shown. {@code 0} means any number of matches
+	 * @param deadline the deadline of the wait
+	 * @param scroll {@code true} if scrolling should be performed
+	 * @param onlyVisible {@code true} if only visible text views should be waited for
+	 * @return {@code true} if text is found and {@code false} if it is not found before the deadline
+	 */
+
+	public <T extends TextView> T waitForText(Class<T> classToFilterBy, String text, int expectedMinimumNumberOfMatches, Deadline deadline, boolean scroll, boolean onlyVisible) {
+		final Sleeper.Poll poll = sleeper.startPoll("waitForText");
 		//
 		while (true) {
 			//是否超时判断
-			final boolean timedOut = SystemClock.uptimeMillis() > endTime;
-			if (timedOut){
+			if (deadline.isExpired()){
 				return null;
 			}
-			
-			sleeper.sleep();
-			// true  searcher方法调用中循环，直到超时退出，false  searcher方法中不循环执行只做一次判断
-			if(!hardStoppage)
-				timeout = 0;
-			//寻找符合条件的textView
-			final T textViewToReturn = searcher.searchFor(classToFilterBy, text, expectedMinimumNumberOfMatches, timeout, scroll, onlyVisible);
+			final int changeCount = sleeper.getChangeCount();
+			//寻找符合条件的textView，查找和滚动使用同一个截止时间
+			final T textViewToReturn = searcher.searchFor(classToFilterBy, text, expectedMinimumNumberOfMatches, deadline, scroll, onlyVisible);
 			//如果textView不为空，则返回
 			if (textViewToReturn != null ){
+				poll.done();
 				return textViewToReturn;
 			}
+			//界面变化时立即重新检查
+			poll.sleepUntilChange(changeCount, deadline.getEndTime());
 		}
 	}
 
@@ -750,7 +865,7 @@ class Waiter {
 		//获取当前屏幕的非重复view数量
 		int numberOfUniqueViews = searcher.getNumberOfUniqueViews();
 		//去除看不见的view
-		ArrayList<T> views = RobotiumUtils.removeInvisibleViews(viewFetcher.getCurrentViews(classToFilterBy, true));
+		ArrayList<T> views = viewFetcher.removeInvisibleViews(viewFetcher.getCurrentViews(classToFilterBy, true));
 		//计算出index的值
 		if(views.size() < numberOfUniqueViews){
 			int newIndex = index - (numberOfUniqueViews - views.size());
@@ -792,14 +907,17 @@ class Waiter {
 	public boolean waitForFragment(String tag, int id, int timeout){
 		//计算出超时时间
 		long endTime = SystemClock.uptimeMillis() + timeout;
+		final Sleeper.Poll poll = sleeper.startPoll("waitForFragment");
 		//规定时间内循环
 		while (SystemClock.uptimeMillis() <= endTime) {
-			// 查找 android.support.v4.app.Fragment ，找到返回 android.support.v4.app.Fragment ,未找到继续查找 android.app.Fragment
-			if(getSupportFragment(tag, id) != null)
-				return true;
-			// 查找 android.app.Fragment
-			if(getFragment(tag, id) != null)
+			final int changeCount = sleeper.getChangeCount();
+			// 查找 android.support.v4.app.Fragment ，未找到继续查找 android.app.Fragment
+			if(getSupportFragment(tag, id) != null || getFragment(tag, id) != null){
+				poll.done();
 				return true;
+			}
+			//不再空转，界面变化时立即重新检查
+			poll.sleepUntilChange(changeCount, endTime);
 		}
 		return false;
 	}
@@ -846,76 +964,20 @@ class Waiter {
 	 */
 
 	public boolean waitForLogMessage(String logMessage, int timeout){
-		StringBuilder stringBuilder = new StringBuilder();
-		//计算出超时时间
-		long endTime = SystemClock.uptimeMillis() + timeout;
-		//在规定时间里循环
-		while (SystemClock.uptimeMillis() <= endTime) {
-			// 读取logcat内容检查指定内容是否出现
-			if(getLog(stringBuilder).lastIndexOf(logMessage) != -1){
-				return true;
-			}
-			sleeper.sleep();
-		}
-		//指定时间未找到，返回false
-		return false;
+		//只检查logcat读取器新读取的行，日志出现时立即返回
+		return logcatReader.waitForMessage(logMessage, timeout);
 	}
 
 	/**
-	 * 获取当前logcat 
-	 * Returns the log in the given stringBuilder. 
-	 * 
-	 * @param stringBuilder the StringBuilder object to return the log in
-	 * @return the log
+	 * 开始监视日志中的多个模式
+	 * Starts watching the log for the given patterns.
+	 *
+	 * @param patterns the patterns to watch for, interpreted as regular expressions
+	 * @return the {@code LogWatch} that records the matches
 	 */
 
-	private StringBuilder getLog(StringBuilder stringBuilder) {
-		Process p = null;
-		BufferedReader reader = null;
-		String line = null;  
-
-		try {
-			// read output from logcat
-			p = Runtime.getRuntime().exec("logcat -d");
-			reader = new BufferedReader(  
-					new InputStreamReader(p.getInputStream())); 
-
-			stringBuilder.setLength(0);
-			while ((line = reader.readLine()) != null) {  
-				stringBuilder.append(line); 
-			}
-			reader.close();
-
-			// read error from logcat
-			StringBuilder errorLog = new StringBuilder();
-			reader = new BufferedReader(new InputStreamReader(
-					p.getErrorStream()));
-			errorLog.append("logcat returns error: ");
-			while ((line = reader.readLine()) != null) {
-				errorLog.append(line);
-			}
-			reader.close();
-
-			// Exception would be thrown if we get exitValue without waiting for the process
-			// to finish
-			p.waitFor();
-
-			// if exit value of logcat is non-zero, it means error
-			if (p.exitValue() != 0) {
-				destroy(p, reader);
-
-				throw new Exception(errorLog.toString());
-			}
-
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		destroy(p, reader);
-		return stringBuilder;
+	public LogWatch watchLog(String... patterns){
+		return logcatReader.watch(patterns);
 	}
 
 	/**
@@ -924,31 +986,27 @@ class Waiter {
 	 */
 
 	public void clearLog(){
-		Process p = null;
-		try {
-			p = Runtime.getRuntime().exec("logcat -c");
-		}catch(IOException e){
-			e.printStackTrace();
-		}
+		logcatReader.clear();
 	}
 
 	/**
-	 * 销毁进程，并关闭reader
-	 * p      需要销毁的进程
-	 * reader 需要关闭的BufferedReader
-	 * Destroys the process and closes the BufferedReader.
-	 * 
-	 * @param p the process to destroy
-	 * @param reader the BufferedReader to close
+	 * 停止读取logcat，下一次等待日志时重新启动
+	 * Stops reading the log. Reading is started again by the next wait for a log message.
 	 */
 
-	private void destroy(Process p, BufferedReader reader){
-		p.destroy();
-		try {
-			reader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	public void stopReadingLog(){
+		logcatReader.stop();
+	}
+
+	/**
+	 * solo生命周期结束，停止logcat进程
+	 * Finalizes the Waiter and stops the logcat process.
+	 */
+
+	@Override
+	public void finalize() throws Throwable {
+		logcatReader.stop();
+		super.finalize();
 	}
 
 	/**
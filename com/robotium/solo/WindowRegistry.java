@@ -0,0 +1,190 @@
+package com.robotium.solo;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import android.view.View;
+
+
+/**
+ * 窗口注册表，保存屏幕上所有窗口的根view(DecorView)以及窗口集合的版本号
+ * Keeps track of the root views of the windows shown on the screen. The fields of the
+ * window manager are resolved once, and the list of windows is versioned so that callers
+ * can skip work when no window has been added or removed since their last query.
+ * There is no public hook for window add/remove, so changes are detected by comparing
+ * the window manager's list with the last one on every query.
+ *
+ */
+
+class WindowRegistry {
+	//window管理类
+	private static Class<?> windowManager;
+	static{
+		try {
+			String windowManagerClassName;
+			if (android.os.Build.VERSION.SDK_INT >= 17) {
+				windowManagerClassName = "android.view.WindowManagerGlobal";
+			} else {
+				windowManagerClassName = "android.view.WindowManagerImpl";
+			}
+			windowManager = Class.forName(windowManagerClassName);
+
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		} catch (SecurityException e) {
+			e.printStackTrace();
+		}
+	}
+	//window管理类的实例和字段，只解析一次
+	private Object windowManagerInstance;
+	private Field viewsField;
+	private Field lockField;
+	//是否已经解析过字段
+	private boolean resolved;
+	//最近一次查询到的窗口
+	private View[] windows;
+	//窗口集合每变化一次加1
+	private int version;
+
+
+	/**
+	 * 返回屏幕上的所有窗口的根view，窗口未变化时返回同一个数组，调用者不能修改
+	 * Returns the root views of the windows shown on the screen. The same array is returned
+	 * as long as the windows have not changed, so it must not be modified.
+	 *
+	 * @return the root views of the windows or {@code null} if they can not be read
+	 */
+
+	public synchronized View[] getWindows() {
+		final View[] currentWindows = readWindows();
+
+		if(currentWindows == null){
+			if(windows != null){
+				windows = null;
+				version++;
+			}
+			return null;
+		}
+		if(!isSameWindows(windows, currentWindows)){
+			windows = currentWindows;
+			version++;
+		}
+		return windows;
+	}
+
+	/**
+	 * 返回窗口集合的版本号，窗口添加或者移除后在下一次getWindows()时加1
+	 * Returns the version of the window set. It is incremented by {@link #getWindows()}
+	 * whenever a window has been added or removed since the previous call.
+	 *
+	 * @return the version of the window set
+	 */
+
+	public synchronized int getVersion() {
+		return version;
+	}
+
+	/**
+	 * 从window管理类中读取当前的窗口
+	 * Reads the current windows from the window manager.
+	 *
+	 * @return the current windows or {@code null} if they can not be read
+	 */
+
+	@SuppressWarnings("unchecked")
+	private View[] readWindows() {
+		if(!resolveFields()){
+			return null;
+		}
+		try {
+			final Object views = viewsField.get(windowManagerInstance);
+			if (android.os.Build.VERSION.SDK_INT >= 19) {
+				//在window管理类的锁内复制，避免窗口同时被添加或移除
+				final Object lock = lockField != null ? lockField.get(windowManagerInstance) : null;
+				if(lock != null){
+					synchronized (lock) {
+						return ((ArrayList<View>) views).toArray(new View[0]);
+					}
+				}
+				return ((ArrayList<View>) views).toArray(new View[0]);
+			}
+			return (View[]) views;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * 解析window管理类的实例和字段，只解析一次
+	 * Resolves the window manager instance and its fields once.
+	 *
+	 * @return true if the fields could be resolved
+	 */
+
+	private boolean resolveFields() {
+		if(resolved){
+			return viewsField != null && windowManagerInstance != null;
+		}
+		try {
+			viewsField = windowManager.getDeclaredField("mViews");
+			viewsField.setAccessible(true);
+			final Field instanceField = windowManager.getDeclaredField(getWindowManagerString());
+			instanceField.setAccessible(true);
+			windowManagerInstance = instanceField.get(null);
+		} catch (Exception e) {
+			e.printStackTrace();
+			viewsField = null;
+			windowManagerInstance = null;
+		}
+		try {
+			lockField = windowManager.getDeclaredField("mLock");
+			lockField.setAccessible(true);
+		} catch (Exception ignored) {
+			lockField = null;
+		}
+		//实例还未创建时(例如还没有窗口)，下次再解析
+		resolved = windowManagerInstance != null;
+		return viewsField != null && windowManagerInstance != null;
+	}
+
+	/**
+	 * 判断两次读取到的窗口是否相同，按引用逐个比较
+	 * Checks if two lists of windows contain the same views in the same order.
+	 *
+	 * @param previousWindows the windows of the previous query
+	 * @param currentWindows the windows of the current query
+	 * @return true if the windows are the same
+	 */
+
+	private boolean isSameWindows(View[] previousWindows, View[] currentWindows) {
+		if(previousWindows == null || previousWindows.length != currentWindows.length){
+			return false;
+		}
+		for(int i = 0; i < currentWindows.length; i++){
+			if(previousWindows[i] != currentWindows[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 判断当前Android版本对应的WindowManager对象字段名
+	 * Returns the name of the field holding the window manager instance.
+	 *
+	 * @return the name of the field
+	 */
+
+	private static String getWindowManagerString() {
+
+		if (android.os.Build.VERSION.SDK_INT >= 17) {
+			return "sDefaultWindowManager";
+
+		} else if(android.os.Build.VERSION.SDK_INT >= 13) {
+			return "sWindowManager";
+
+		} else {
+			return "mWindowManager";
+		}
+	}
+}
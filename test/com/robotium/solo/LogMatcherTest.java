@@ -0,0 +1,75 @@
+package com.robotium.solo;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+
+/**
+ * Tests the Aho-Corasick automaton and the regular expression fallback of {@link LogMatcher}.
+ */
+
+public class LogMatcherTest extends TestCase {
+
+	public void testOverlappingPatternsAllMatch() {
+		final LogMatcher logMatcher = new LogMatcher(new String[]{"abc", "bcd", "cd"});
+
+		assertMatches(logMatcher, "xabcdx", 0, 1, 2);
+		assertMatches(logMatcher, "xbcx", new int[0]);
+	}
+
+	public void testSharedSuffixesFollowFailureLinks() {
+		final LogMatcher logMatcher = new LogMatcher(new String[]{"he", "she", "his", "hers"});
+
+		assertMatches(logMatcher, "ushers", 0, 1, 3);
+		assertMatches(logMatcher, "this", 2);
+		assertMatches(logMatcher, "sher", 0, 1);
+	}
+
+	public void testPatternThatIsPrefixOfAnother() {
+		final LogMatcher logMatcher = new LogMatcher(new String[]{"Activity", "ActivityManager"});
+
+		assertMatches(logMatcher, "I/ActivityManager: Start proc", 0, 1);
+		assertMatches(logMatcher, "I/Activity: resumed", 0);
+	}
+
+	public void testEmptyPatternMatchesEveryLine() {
+		final LogMatcher logMatcher = new LogMatcher(new String[]{"", "ab"});
+
+		assertMatches(logMatcher, "", 0);
+		assertMatches(logMatcher, "xyz", 0);
+		assertMatches(logMatcher, "abab", 0, 1);
+	}
+
+	public void testPatternIsReportedOncePerLine() {
+		final LogMatcher logMatcher = new LogMatcher(new String[]{"a", "aa"});
+		final int[] matchedPatterns = new int[2];
+
+		assertEquals(2, logMatcher.match("aaaaa", matchedPatterns));
+		assertEquals(2, logMatcher.match("aaaaa", matchedPatterns));
+		assertEquals(1, logMatcher.match("xax", matchedPatterns));
+		assertEquals(0, matchedPatterns[0]);
+	}
+
+	public void testDuplicatePatternsAreBothReported() {
+		final LogMatcher logMatcher = new LogMatcher(new String[]{"done", "done"});
+
+		assertMatches(logMatcher, "test done", 0, 1);
+	}
+
+	public void testRegularExpressionsAndInvalidPatterns() {
+		final LogMatcher logMatcher = new LogMatcher(new String[]{"err.r", "[unclosed", "ok"});
+
+		assertMatches(logMatcher, "E/App: error", 0);
+		assertMatches(logMatcher, "value [unclosed ok", 1, 2);
+		assertMatches(logMatcher, "errr", new int[0]);
+	}
+
+	//检查一行日志匹配到的模式，与顺序无关
+	private static void assertMatches(LogMatcher logMatcher, String line, int... expectedPatterns) {
+		final int[] matchedPatterns = new int[16];
+		final int matchCount = logMatcher.match(line, matchedPatterns);
+		final int[] actualPatterns = Arrays.copyOf(matchedPatterns, matchCount);
+		Arrays.sort(actualPatterns);
+		assertEquals(line, Arrays.toString(expectedPatterns), Arrays.toString(actualPatterns));
+	}
+}
@@ -0,0 +1,97 @@
+package com.robotium.solo;
+
+import java.util.ArrayList;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.widget.TextView;
+
+
+/**
+ * Tests the candidate filtering of {@link TextIndex}.
+ */
+
+public class TextIndexTest extends InstrumentationTestCase {
+
+	private TextView hello;
+	private TextView goodbye;
+	private TextView peace;
+	private TextView search;
+	private ArrayList<View> views;
+	private TextIndex textIndex;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		hello = newTextView("Hello world");
+		goodbye = newTextView("Goodbye");
+		peace = newTextView("world peace");
+		search = newTextView("");
+		search.setHint("Search here");
+		views = new ArrayList<View>();
+		views.add(hello);
+		views.add(goodbye);
+		views.add(peace);
+		views.add(search);
+		textIndex = new TextIndex(views);
+	}
+
+	public void testViewsContainingEveryFragmentAreCandidates() {
+		assertCandidates("wor.d", hello, peace);
+		assertCandidates("world p", peace);
+	}
+
+	public void testMissingTrigramLeavesNoCandidates() {
+		assertCandidates("xyz.");
+	}
+
+	public void testShortFragmentsDoNotFilter() {
+		final TextMatcher textMatcher = TextMatcher.compile("o.d");
+
+		assertSame(views, textIndex.filter(views, textMatcher));
+	}
+
+	public void testEscapesWithArgumentsKeepTheirCandidates() {
+		final TextView cafe = newTextView("Le café menu");
+		final TextView abc = newTextView("xABCx");
+		final TextView octal = newTextView("Axyz");
+		views.add(cafe);
+		views.add(abc);
+		views.add(octal);
+		textIndex = new TextIndex(views);
+
+		assertCandidates("caf\\u00e9 menu", cafe);
+		assertCandidates("\\x41BCx", abc);
+		assertCandidates("\\0101xyz", octal);
+		assertCandidates("\\cAabc");
+	}
+
+	public void testHintOfEmptyTextIsIndexed() {
+		assertCandidates("Sear.h", search);
+	}
+
+	public void testViewsNotInIndexAreKept() {
+		final TextView webText = newTextView("web content");
+		final ArrayList<View> withWebText = new ArrayList<View>(views);
+		withWebText.add(webText);
+
+		final ArrayList<View> filtered = textIndex.filter(withWebText, TextMatcher.compile("Goodb.e"));
+		assertEquals(2, filtered.size());
+		assertSame(goodbye, filtered.get(0));
+		assertSame(webText, filtered.get(1));
+	}
+
+	private TextView newTextView(String text) {
+		final TextView textView = new TextView(getInstrumentation().getTargetContext());
+		textView.setText(text);
+		return textView;
+	}
+
+	//检查筛选出的候选view，顺序与原列表一致
+	private void assertCandidates(String regex, View... expectedViews) {
+		final ArrayList<View> filtered = textIndex.filter(views, TextMatcher.compile(regex));
+		assertEquals(regex, expectedViews.length, filtered.size());
+		for(int i = 0; i < expectedViews.length; i++){
+			assertSame(regex, expectedViews[i], filtered.get(i));
+		}
+	}
+}
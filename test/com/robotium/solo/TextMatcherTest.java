@@ -0,0 +1,88 @@
+package com.robotium.solo;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+
+/**
+ * Tests the extraction of the plain text fragments every match of a pattern contains.
+ */
+
+public class TextMatcherTest extends TestCase {
+
+	public void testPlainCharactersAndEscapedMetacharacters() {
+		assertFragments("Sign\\.in", "Sign.in");
+		assertFragments("1\\+1 \\(two\\)", "1+1 (two)");
+	}
+
+	public void testLetterAndDigitEscapesEndFragments() {
+		assertFragments("\\d+ items", " items");
+		assertFragments("name\\s*=\\w+", "name", "=");
+		assertFragments("\\bOK\\b", "OK");
+	}
+
+	public void testEscapeArgumentsAreNotFragments() {
+		assertFragments("caf\\u00e9 menu", "caf", " menu");
+		assertFragments("\\x41BC", "BC");
+		assertFragments("\\x{41}BC", "BC");
+		assertFragments("\\0101xyz", "xyz");
+		assertFragments("\\cAxyz", "xyz");
+		assertFragments("\\p{Lu}abc", "abc");
+		assertFragments("\\pLabc", "abc");
+		assertFragments("(ab)\\1xyz", "xyz");
+	}
+
+	public void testEscapeArgumentsStillMatch() {
+		assertFragmentsContainedInMatch("caf\\u00e9 menu", "Le café menu");
+		assertFragmentsContainedInMatch("\\x41BC", "xABC");
+		assertFragmentsContainedInMatch("\\0101xyz", "Axyz");
+		assertFragmentsContainedInMatch("\\cAxyz", "\u0001xyz");
+		assertFragmentsContainedInMatch("(?<word>ab)\\k<word>cd", "ababcd");
+	}
+
+	public void testQuantifiersMakeCharactersOptional() {
+		assertFragments("colou?r", "colo", "r");
+		assertFragments("ab*c", "a", "c");
+		assertFragments("ab{2,3}c", "a", "c");
+		assertFragments("ab+c", "ab", "c");
+	}
+
+	public void testGroupsAndCharacterClassesEndFragments() {
+		assertFragments("x(ab)y", "x", "y");
+		assertFragments("Item [0-9]+ of", "Item ", " of");
+		assertFragments("[]a]xyz", "xyz");
+		assertFragments("[^]]xyz", "xyz");
+		assertFragments("[a[b]]xyz", "xyz");
+		assertFragments("[a-z&&[^b]]xyz", "xyz");
+	}
+
+	public void testNothingIsExtractedFromAlternationFlagsOrQuoting() {
+		assertFragments("Yes|No");
+		assertFragments("(?i)done");
+		assertFragments("\\Qa.b\\E");
+	}
+
+	public void testLiteralMatcherRequiresWholeLiteral() {
+		final TextMatcher textMatcher = TextMatcher.compile("Sign in");
+
+		assertEquals("[Sign in]", Arrays.toString(textMatcher.getRequiredFragments()));
+		assertTrue(textMatcher.find(new StringBuilder("Please Sign in")));
+		assertFalse(textMatcher.find("Sign up"));
+	}
+
+	//检查提取到的片段，顺序一致
+	private static void assertFragments(String regex, String... expectedFragments) {
+		assertEquals(regex, Arrays.toString(expectedFragments), Arrays.toString(TextMatcher.extractRequiredFragments(regex)));
+	}
+
+	//检查模式匹配给定文本，并且每个片段都在匹配到的文本中
+	private static void assertFragmentsContainedInMatch(String regex, String text) {
+		final Matcher matcher = Pattern.compile(regex).matcher(text);
+		assertTrue(regex, matcher.find());
+		for(String fragment : TextMatcher.compile(regex).getRequiredFragments()){
+			assertTrue(regex + " requires " + fragment, matcher.group().contains(fragment));
+		}
+	}
+}